@@ -2,8 +2,25 @@ package com.mybible.util;
 
 import java.io.*;
 import java.net.*;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
-import javax.net.ssl.HttpsURLConnection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
 
 /**
  * ApiBibleService - Integration with api.bible for additional translations
@@ -27,6 +44,43 @@ public class ApiBibleService {
     private boolean configured = false;
 
     private static final String BASE_URL = "https://api.scripture.api.bible/v1";
+    private volatile String baseUrl = BASE_URL;
+
+    // One client for all calls: pooled keep-alive connections, HTTP/2 when the server offers it
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_2)
+        .connectTimeout(Duration.ofSeconds(3))
+        .followRedirects(HttpClient.Redirect.NORMAL)
+        .build();
+    // One upstream attempt; callers wait at most CALL_TIMEOUT across all retries
+    private static final Duration ATTEMPT_TIMEOUT = Duration.ofSeconds(5);
+    private static final Duration CALL_TIMEOUT = Duration.ofSeconds(20);
+
+    // Retry 429/5xx/connection failures with jittered exponential backoff
+    private static final int MAX_RETRIES = 2;
+    private static final long BACKOFF_BASE_MS = 250;
+    private static final long BACKOFF_MAX_MS = 4000;
+
+    // Stay under the api.bible quota, and stop calling it while it is failing
+    private volatile TokenBucket rateLimiter = new TokenBucket(60, 10);
+    private volatile int ratePerMinute = 60;
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker("api.bible", 5, 30000);
+
+    // Background warm-up/read-ahead; null until startPrefetch() is called
+    private volatile ApiPrefetcher prefetcher;
+    private static final int PREFETCH_MAX_SHARE = 4;  // prefetch gets at most 1/4 of the rate limit
+
+    // Passage/book/chapter/search responses; memory-only until configureCache() is called
+    private static final long DEFAULT_RESPONSE_TTL = 24 * 3600000L;
+    private volatile ApiResponseCache responseCache = new ApiResponseCache(null, 1000, DEFAULT_RESPONSE_TTL);
+
+    // Upstream calls in progress, by endpoint - identical concurrent requests share one call
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder upstreamRequests = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder staleServed = new LongAdder();
 
     // Cache for Bible metadata
     private final Map<String, BibleInfo> biblesCache = new LinkedHashMap<>();
@@ -45,6 +99,79 @@ public class ApiBibleService {
         POPULAR_BIBLES.put("WEB-API", "9879dbb7cfe39e4d-04");
     }
 
+    // Standard abbreviations used by api.bible, keyed by BibleService.BOOK_ORDER name
+    public static final Map<String, String> BOOK_IDS;
+    static {
+        Map<String, String> bookIds = new LinkedHashMap<>();
+        bookIds.put("Genesis", "GEN");
+        bookIds.put("Exodus", "EXO");
+        bookIds.put("Leviticus", "LEV");
+        bookIds.put("Numbers", "NUM");
+        bookIds.put("Deuteronomy", "DEU");
+        bookIds.put("Joshua", "JOS");
+        bookIds.put("Judges", "JDG");
+        bookIds.put("Ruth", "RUT");
+        bookIds.put("1 Samuel", "1SA");
+        bookIds.put("2 Samuel", "2SA");
+        bookIds.put("1 Kings", "1KI");
+        bookIds.put("2 Kings", "2KI");
+        bookIds.put("1 Chronicles", "1CH");
+        bookIds.put("2 Chronicles", "2CH");
+        bookIds.put("Ezra", "EZR");
+        bookIds.put("Nehemiah", "NEH");
+        bookIds.put("Esther", "EST");
+        bookIds.put("Job", "JOB");
+        bookIds.put("Psalms", "PSA");
+        bookIds.put("Proverbs", "PRO");
+        bookIds.put("Ecclesiastes", "ECC");
+        bookIds.put("Song of Solomon", "SNG");
+        bookIds.put("Isaiah", "ISA");
+        bookIds.put("Jeremiah", "JER");
+        bookIds.put("Lamentations", "LAM");
+        bookIds.put("Ezekiel", "EZK");
+        bookIds.put("Daniel", "DAN");
+        bookIds.put("Hosea", "HOS");
+        bookIds.put("Joel", "JOL");
+        bookIds.put("Amos", "AMO");
+        bookIds.put("Obadiah", "OBA");
+        bookIds.put("Jonah", "JON");
+        bookIds.put("Micah", "MIC");
+        bookIds.put("Nahum", "NAM");
+        bookIds.put("Habakkuk", "HAB");
+        bookIds.put("Zephaniah", "ZEP");
+        bookIds.put("Haggai", "HAG");
+        bookIds.put("Zechariah", "ZEC");
+        bookIds.put("Malachi", "MAL");
+        bookIds.put("Matthew", "MAT");
+        bookIds.put("Mark", "MRK");
+        bookIds.put("Luke", "LUK");
+        bookIds.put("John", "JHN");
+        bookIds.put("Acts", "ACT");
+        bookIds.put("Romans", "ROM");
+        bookIds.put("1 Corinthians", "1CO");
+        bookIds.put("2 Corinthians", "2CO");
+        bookIds.put("Galatians", "GAL");
+        bookIds.put("Ephesians", "EPH");
+        bookIds.put("Philippians", "PHP");
+        bookIds.put("Colossians", "COL");
+        bookIds.put("1 Thessalonians", "1TH");
+        bookIds.put("2 Thessalonians", "2TH");
+        bookIds.put("1 Timothy", "1TI");
+        bookIds.put("2 Timothy", "2TI");
+        bookIds.put("Titus", "TIT");
+        bookIds.put("Philemon", "PHM");
+        bookIds.put("Hebrews", "HEB");
+        bookIds.put("James", "JAS");
+        bookIds.put("1 Peter", "1PE");
+        bookIds.put("2 Peter", "2PE");
+        bookIds.put("1 John", "1JN");
+        bookIds.put("2 John", "2JN");
+        bookIds.put("3 John", "3JN");
+        bookIds.put("Jude", "JUD");
+        bookIds.put("Revelation", "REV");
+        BOOK_IDS = Collections.unmodifiableMap(bookIds);
+    }
+
     private ApiBibleService() {}
 
     public static synchronized ApiBibleService getInstance() {
@@ -67,6 +194,81 @@ public class ApiBibleService {
         return configured;
     }
 
+    /**
+     * Point the service at another api.bible-compatible server (e.g. a local stub)
+     */
+    public void setBaseUrl(String baseUrl) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        System.out.println("[ApiBibleService] Base URL: " + this.baseUrl);
+    }
+
+    /**
+     * Configure the response cache
+     *
+     * @param directory disk tier location (survives restarts), or null for memory only
+     * @param maxEntries in-memory LRU capacity
+     * @param freshMs how long a response is used before it is fetched again
+     * @param ttlMs how long responses are kept (and served stale while api.bible
+     *              is unavailable) - must stay within the api.bible license terms
+     */
+    public void configureCache(String directory, int maxEntries, long freshMs, long ttlMs) {
+        this.responseCache = new ApiResponseCache(directory != null ? Paths.get(directory) : null,
+            maxEntries, freshMs, ttlMs);
+        System.out.println("[ApiBibleService] Response cache: " + maxEntries + " entries, fresh " +
+            (freshMs / 60000) + " min, TTL " + (ttlMs / 60000) + " min, disk=" + (directory != null ? directory : "off"));
+    }
+
+    /**
+     * Match the client-side rate limit to the api.bible quota
+     *
+     * @param requestsPerMinute sustained rate
+     * @param burst requests allowed at once after an idle period
+     */
+    public void configureRateLimit(int requestsPerMinute, int burst) {
+        this.rateLimiter = new TokenBucket(requestsPerMinute, burst);
+        this.ratePerMinute = requestsPerMinute;
+        System.out.println("[ApiBibleService] Rate limit: " + requestsPerMinute + "/min, burst " + burst);
+    }
+
+    /**
+     * Start warming the passage cache in the background
+     *
+     * @param requestsPerMinute upstream requests prefetching may use, capped at
+     *                          1/PREFETCH_MAX_SHARE of the rate limit (call
+     *                          configureRateLimit() first); prefetch also waits
+     *                          while less than half the burst is available
+     * @param statsFile where passage access counts survive restarts, or null
+     */
+    public synchronized void startPrefetch(int requestsPerMinute, Path statsFile) {
+        int maxRate = Math.max(1, ratePerMinute / PREFETCH_MAX_SHARE);
+        if (requestsPerMinute > maxRate) {
+            System.err.println("[ApiBibleService] WARNING: Prefetch rate " + requestsPerMinute +
+                "/min leaves too little of the " + ratePerMinute + "/min limit for readers, using " + maxRate + "/min");
+            requestsPerMinute = maxRate;
+        }
+        if (prefetcher != null) prefetcher.stop();
+        prefetcher = new ApiPrefetcher(this, requestsPerMinute, statsFile);
+        prefetcher.start();
+    }
+
+    /**
+     * @return prefetch metrics, or null if prefetching is off
+     */
+    public ApiPrefetcher.Stats getPrefetchStats() {
+        ApiPrefetcher p = prefetcher;
+        return p != null ? p.getStats() : null;
+    }
+
+    public ApiResponseCache.Stats getCacheStats() {
+        return responseCache.getStats();
+    }
+
+    public RequestStats getRequestStats() {
+        return new RequestStats(upstreamRequests.sum(), coalescedRequests.sum(), inFlight.size(),
+            retries.sum(), rateLimited.sum(), circuitBreaker.getRejectedCount(), staleServed.sum(),
+            circuitBreaker.getState().name(), circuitBreaker.getConsecutiveFailures(), circuitBreaker.getTimesOpened());
+    }
+
     // ========================================================================
     // API Methods
     // ========================================================================
@@ -112,6 +314,16 @@ public class ApiBibleService {
         return parseBooksResponse(response);
     }
 
+    /**
+     * Non-blocking getBooks()
+     */
+    public CompletableFuture<List<BookInfo>> getBooksAsync(String bibleId) {
+        if (!configured) return CompletableFuture.completedFuture(Collections.emptyList());
+
+        return makeRequestAsync("/bibles/" + bibleId + "/books")
+            .thenApply(response -> response != null ? parseBooksResponse(response) : Collections.<BookInfo>emptyList());
+    }
+
     /**
      * Get chapters for a book
      * GET /v1/bibles/{bibleId}/books/{bookId}/chapters
@@ -136,15 +348,67 @@ public class ApiBibleService {
      */
     public PassageContent getPassage(String bibleId, String passageId) throws IOException {
         if (!configured) return null;
+        recordAccess(bibleId, passageId);
 
-        // content-type can be: html, json, text
-        String response = makeRequest("/bibles/" + bibleId + "/passages/" + passageId +
-            "?content-type=text&include-notes=false&include-titles=true&include-chapter-numbers=false&include-verse-numbers=true");
+        String response = makeRequest(passageEndpoint(bibleId, passageId));
         if (response == null) return null;
 
         return parsePassageResponse(response);
     }
 
+    /**
+     * Non-blocking getPassage()
+     */
+    public CompletableFuture<PassageContent> getPassageAsync(String bibleId, String passageId) {
+        if (!configured) return CompletableFuture.completedFuture(null);
+        recordAccess(bibleId, passageId);
+
+        return makeRequestAsync(passageEndpoint(bibleId, passageId))
+            .thenApply(response -> response != null ? parsePassageResponse(response) : null);
+    }
+
+    private void recordAccess(String bibleId, String passageId) {
+        ApiPrefetcher p = prefetcher;
+        if (p != null) p.recordAccess(bibleId, passageId);
+    }
+
+    // ========================================================================
+    // Prefetch Support (used by ApiPrefetcher)
+    // ========================================================================
+
+    boolean isPassageFresh(String bibleId, String passageId) {
+        return responseCache.isFresh(passageEndpoint(bibleId, passageId));
+    }
+
+    /**
+     * True while readers are not using the quota: circuit closed and at least
+     * half the rate-limit burst available
+     */
+    boolean hasSpareCapacity() {
+        TokenBucket limiter = rateLimiter;
+        return configured
+            && circuitBreaker.getState() == CircuitBreaker.State.CLOSED
+            && limiter.getAvailableTokens() * 2 >= limiter.getCapacity();
+    }
+
+    /**
+     * Fetch a passage into the response cache without counting it as a reader
+     * access or a cache lookup
+     *
+     * @return true if a fresh copy is now cached, false if api.bible has no such passage
+     * @throws IOException if api.bible failed (no stale copy is substituted)
+     */
+    boolean prefetchPassage(String bibleId, String passageId) throws IOException {
+        String endpoint = passageEndpoint(bibleId, passageId);
+        return await(endpoint, fetch(endpoint, true)) != null;
+    }
+
+    private static String passageEndpoint(String bibleId, String passageId) {
+        // content-type can be: html, json, text
+        return "/bibles/" + bibleId + "/passages/" + passageId +
+            "?content-type=text&include-notes=false&include-titles=true&include-chapter-numbers=false&include-verse-numbers=true";
+    }
+
     /**
      * Search for text
      * GET /v1/bibles/{bibleId}/search
@@ -152,124 +416,283 @@ public class ApiBibleService {
     public SearchResult search(String bibleId, String query, int limit) throws IOException {
         if (!configured) return null;
 
-        String encodedQuery = URLEncoder.encode(query, "UTF-8");
-        String response = makeRequest("/bibles/" + bibleId + "/search?query=" + encodedQuery + "&limit=" + limit);
+        String response = makeRequest(searchEndpoint(bibleId, query, limit));
         if (response == null) return null;
 
         return parseSearchResponse(response);
     }
 
+    /**
+     * Non-blocking search()
+     */
+    public CompletableFuture<SearchResult> searchAsync(String bibleId, String query, int limit) {
+        if (!configured) return CompletableFuture.completedFuture(null);
+
+        return makeRequestAsync(searchEndpoint(bibleId, query, limit))
+            .thenApply(response -> response != null ? parseSearchResponse(response) : null);
+    }
+
+    private static String searchEndpoint(String bibleId, String query, int limit) {
+        String encodedQuery = URLEncoder.encode(query, StandardCharsets.UTF_8);
+        return "/bibles/" + bibleId + "/search?query=" + encodedQuery + "&limit=" + limit;
+    }
+
+    /**
+     * Split text-format passage content ("[1] In the beginning... [2] The earth...")
+     * into verse number -> text. Text before the first verse marker is dropped.
+     */
+    public static Map<Integer, String> parseVerses(String content) {
+        Map<Integer, String> verses = new LinkedHashMap<>();
+        if (content == null) return verses;
+
+        int verse = -1;
+        int textStart = 0;
+        int i = 0;
+        int length = content.length();
+        while (i < length) {
+            if (content.charAt(i) == '[') {
+                int j = i + 1;
+                while (j < length && Character.isDigit(content.charAt(j))) j++;
+                if (j > i + 1 && j < length && content.charAt(j) == ']' && j - i <= 4) {
+                    if (verse > 0) addVerse(verses, verse, content.substring(textStart, i));
+                    verse = Integer.parseInt(content.substring(i + 1, j));
+                    textStart = j + 1;
+                    i = textStart;
+                    continue;
+                }
+            }
+            i++;
+        }
+        if (verse > 0) addVerse(verses, verse, content.substring(textStart));
+        return verses;
+    }
+
+    private static void addVerse(Map<Integer, String> verses, int verse, String text) {
+        String cleaned = text.trim().replaceAll("\\s+", " ");
+        if (cleaned.isEmpty()) return;
+        verses.merge(verse, cleaned, (a, b) -> a + " " + b);
+    }
+
     /**
      * Convert standard book name to API book ID
      * e.g., "Genesis" -> "GEN", "1 Corinthians" -> "1CO"
      */
     public static String bookNameToId(String bookName) {
-        // Standard abbreviations used by api.bible
-        Map<String, String> bookIds = new LinkedHashMap<>();
-        bookIds.put("Genesis", "GEN");
-        bookIds.put("Exodus", "EXO");
-        bookIds.put("Leviticus", "LEV");
-        bookIds.put("Numbers", "NUM");
-        bookIds.put("Deuteronomy", "DEU");
-        bookIds.put("Joshua", "JOS");
-        bookIds.put("Judges", "JDG");
-        bookIds.put("Ruth", "RUT");
-        bookIds.put("1 Samuel", "1SA");
-        bookIds.put("2 Samuel", "2SA");
-        bookIds.put("1 Kings", "1KI");
-        bookIds.put("2 Kings", "2KI");
-        bookIds.put("1 Chronicles", "1CH");
-        bookIds.put("2 Chronicles", "2CH");
-        bookIds.put("Ezra", "EZR");
-        bookIds.put("Nehemiah", "NEH");
-        bookIds.put("Esther", "EST");
-        bookIds.put("Job", "JOB");
-        bookIds.put("Psalms", "PSA");
-        bookIds.put("Proverbs", "PRO");
-        bookIds.put("Ecclesiastes", "ECC");
-        bookIds.put("Song of Solomon", "SNG");
-        bookIds.put("Isaiah", "ISA");
-        bookIds.put("Jeremiah", "JER");
-        bookIds.put("Lamentations", "LAM");
-        bookIds.put("Ezekiel", "EZK");
-        bookIds.put("Daniel", "DAN");
-        bookIds.put("Hosea", "HOS");
-        bookIds.put("Joel", "JOL");
-        bookIds.put("Amos", "AMO");
-        bookIds.put("Obadiah", "OBA");
-        bookIds.put("Jonah", "JON");
-        bookIds.put("Micah", "MIC");
-        bookIds.put("Nahum", "NAM");
-        bookIds.put("Habakkuk", "HAB");
-        bookIds.put("Zephaniah", "ZEP");
-        bookIds.put("Haggai", "HAG");
-        bookIds.put("Zechariah", "ZEC");
-        bookIds.put("Malachi", "MAL");
-        bookIds.put("Matthew", "MAT");
-        bookIds.put("Mark", "MRK");
-        bookIds.put("Luke", "LUK");
-        bookIds.put("John", "JHN");
-        bookIds.put("Acts", "ACT");
-        bookIds.put("Romans", "ROM");
-        bookIds.put("1 Corinthians", "1CO");
-        bookIds.put("2 Corinthians", "2CO");
-        bookIds.put("Galatians", "GAL");
-        bookIds.put("Ephesians", "EPH");
-        bookIds.put("Philippians", "PHP");
-        bookIds.put("Colossians", "COL");
-        bookIds.put("1 Thessalonians", "1TH");
-        bookIds.put("2 Thessalonians", "2TH");
-        bookIds.put("1 Timothy", "1TI");
-        bookIds.put("2 Timothy", "2TI");
-        bookIds.put("Titus", "TIT");
-        bookIds.put("Philemon", "PHM");
-        bookIds.put("Hebrews", "HEB");
-        bookIds.put("James", "JAS");
-        bookIds.put("1 Peter", "1PE");
-        bookIds.put("2 Peter", "2PE");
-        bookIds.put("1 John", "1JN");
-        bookIds.put("2 John", "2JN");
-        bookIds.put("3 John", "3JN");
-        bookIds.put("Jude", "JUD");
-        bookIds.put("Revelation", "REV");
-
-        return bookIds.getOrDefault(bookName, bookName);
+        return BOOK_IDS.getOrDefault(bookName, bookName);
     }
 
     // ========================================================================
     // HTTP Request
     // ========================================================================
 
+    /**
+     * GET an endpoint. Returns null on a client error (4xx other than 429);
+     * throws if api.bible stays unavailable and nothing is cached.
+     */
     private String makeRequest(String endpoint) throws IOException {
-        URL url = new URL(BASE_URL + endpoint);
-        HttpsURLConnection conn = (HttpsURLConnection) url.openConnection();
+        return await(endpoint, fetch(endpoint, false));
+    }
+
+    private static String await(String endpoint, CompletableFuture<String> future) throws IOException {
+        try {
+            return future.get(CALL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + endpoint);
+        } catch (TimeoutException e) {
+            throw new HttpTimeoutException("Timed out waiting for " + endpoint);
+        } catch (ExecutionException e) {
+            throw asIOException(endpoint, e.getCause());
+        }
+    }
+
+    /**
+     * Same as makeRequest, but completes on the client's threads instead of
+     * blocking the caller; fails with the IOException makeRequest would throw
+     */
+    private CompletableFuture<String> makeRequestAsync(String endpoint) {
+        return fetch(endpoint, false).orTimeout(CALL_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)
+            .handle((body, error) -> {
+                if (error == null) return CompletableFuture.completedFuture(body);
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+                IOException failure = cause instanceof TimeoutException
+                    ? new HttpTimeoutException("Timed out waiting for " + endpoint)
+                    : asIOException(endpoint, cause);
+                return CompletableFuture.<String>failedFuture(failure);
+            })
+            .thenCompose(result -> result);
+    }
+
+    /**
+     * Serve from the cache, join an identical call already in flight, or start
+     * a new one. Each caller gets its own copy of the shared future, so one
+     * caller timing out or cancelling does not affect the others; an upstream
+     * failure completes every waiter exceptionally, unless a stale copy can be
+     * served to it instead.
+     *
+     * @param background prefetch: not counted in the cache or coalescing stats,
+     *                   and fails rather than falling back to a stale copy
+     */
+    private CompletableFuture<String> fetch(String endpoint, boolean background) {
+        ApiResponseCache cache = responseCache;
+        String cached = background ? cache.peek(endpoint) : cache.get(endpoint);
+        if (cached != null) return CompletableFuture.completedFuture(cached);
+
+        CompletableFuture<String> call = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(endpoint, call);
+        if (existing != null) {
+            if (background) return existing.copy();
+            coalescedRequests.increment();
+            return withStaleFallback(endpoint, cache, existing);
+        }
+
+        attempt(endpoint, cache, 0).whenComplete((body, error) -> {
+            // Leave the map before waking waiters, so a failed call is not reused
+            inFlight.remove(endpoint, call);
+            if (error == null) {
+                call.complete(body);
+            } else {
+                call.completeExceptionally(error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error);
+            }
+        });
+        return background ? call.copy() : withStaleFallback(endpoint, cache, call);
+    }
+
+    /**
+     * A reader's copy of a shared call that serves the stale cached body, if
+     * any, when the call fails
+     */
+    private CompletableFuture<String> withStaleFallback(String endpoint, ApiResponseCache cache,
+                                                        CompletableFuture<String> call) {
+        CompletableFuture<String> copy = new CompletableFuture<>();
+        call.whenComplete((body, error) -> {
+            if (error == null) {
+                copy.complete(body);
+                return;
+            }
+            String stale = cache.getStale(endpoint);
+            if (stale != null) {
+                staleServed.increment();
+                System.err.println("[ApiBibleService] Serving stale " + endpoint + ": " + error.getMessage());
+                copy.complete(stale);
+            } else {
+                copy.completeExceptionally(error);
+            }
+        });
+        return copy;
+    }
 
+    /**
+     * One upstream attempt, chained to the next after a backoff delay when the
+     * failure is worth retrying
+     */
+    private CompletableFuture<String> attempt(String endpoint, ApiResponseCache cache, int retry) {
+        if (!circuitBreaker.allowRequest()) {
+            return CompletableFuture.failedFuture(new IOException("api.bible unavailable (circuit open)"));
+        }
+        if (!rateLimiter.tryAcquire()) {
+            circuitBreaker.releaseTrial();
+            rateLimited.increment();
+            return CompletableFuture.failedFuture(new IOException("api.bible rate limit reached"));
+        }
+
+        upstreamRequests.increment();
+        CompletableFuture<HttpResponse<byte[]>> send;
         try {
-            conn.setRequestMethod("GET");
-            conn.setRequestProperty("api-key", apiKey);
-            conn.setRequestProperty("Accept", "application/json");
-            conn.setConnectTimeout(10000);
-            conn.setReadTimeout(30000);
-
-            int responseCode = conn.getResponseCode();
-            if (responseCode != 200) {
-                System.err.println("[ApiBibleService] API error: " + responseCode + " for " + endpoint);
-                return null;
+            send = HTTP_CLIENT.sendAsync(buildRequest(endpoint), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return send.handle((response, error) -> {
+            if (error == null && !isRetryable(response.statusCode())) {
+                circuitBreaker.recordSuccess();
+                try {
+                    String body = readBody(endpoint, response);
+                    if (body != null) cache.put(endpoint, body);
+                    return CompletableFuture.completedFuture(body);
+                } catch (IOException e) {
+                    return CompletableFuture.<String>failedFuture(e);
+                }
             }
 
-            BufferedReader reader = new BufferedReader(new InputStreamReader(conn.getInputStream(), "UTF-8"));
-            StringBuilder response = new StringBuilder();
-            String line;
-            while ((line = reader.readLine()) != null) {
-                response.append(line);
+            circuitBreaker.recordFailure();
+            String reason = error != null
+                ? (error instanceof CompletionException && error.getCause() != null ? error.getCause() : error).toString()
+                : "HTTP " + response.statusCode();
+            boolean retryable = retry < MAX_RETRIES && circuitBreaker.getState() != CircuitBreaker.State.OPEN;
+            long delay = retryable ? backoffDelay(retry, response) : -1;
+            if (delay < 0) {
+                return CompletableFuture.<String>failedFuture(
+                    new IOException("api.bible request failed after " + (retry + 1) + " attempts: " + reason));
             }
-            reader.close();
 
-            return response.toString();
+            retries.increment();
+            System.err.println("[ApiBibleService] " + reason + " for " + endpoint + ", retrying in " + delay + "ms");
+            Executor later = CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS);
+            return CompletableFuture.supplyAsync(() -> retry + 1, later)
+                .thenCompose(next -> attempt(endpoint, cache, next));
+        }).thenCompose(result -> result);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
 
-        } finally {
-            conn.disconnect();
+    /**
+     * Exponential backoff with equal jitter; a 429's Retry-After is honoured
+     * when it fits within BACKOFF_MAX_MS
+     *
+     * @return delay in millis, or -1 if the server asked us to wait longer than that
+     */
+    private static long backoffDelay(int retry, HttpResponse<byte[]> response) {
+        if (response != null && response.statusCode() == 429) {
+            Optional<String> retryAfter = response.headers().firstValue("Retry-After");
+            if (retryAfter.isPresent()) {
+                try {
+                    long ms = Long.parseLong(retryAfter.get().trim()) * 1000;
+                    return ms <= BACKOFF_MAX_MS ? ms : -1;
+                } catch (NumberFormatException e) {
+                    // HTTP-date form - fall back to our own backoff
+                }
+            }
+        }
+        long ceiling = Math.min(BACKOFF_MAX_MS, BACKOFF_BASE_MS << retry);
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private static IOException asIOException(String endpoint, Throwable error) {
+        if (error instanceof UncheckedIOException) return ((UncheckedIOException) error).getCause();
+        if (error instanceof IOException) return (IOException) error;
+        return new IOException("Request failed for " + endpoint + ": " + error, error);
+    }
+
+    private HttpRequest buildRequest(String endpoint) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + endpoint))
+            .timeout(ATTEMPT_TIMEOUT)
+            .header("api-key", apiKey)
+            .header("Accept", "application/json")
+            .header("Accept-Encoding", "gzip")
+            .GET()
+            .build();
+    }
+
+    private static String readBody(String endpoint, HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() != 200) {
+            System.err.println("[ApiBibleService] API error: " + response.statusCode() + " for " + endpoint);
+            return null;
+        }
+
+        byte[] body = response.body();
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("");
+        if (encoding.equalsIgnoreCase("gzip")) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
         }
+        return new String(body, StandardCharsets.UTF_8);
     }
 
     // ========================================================================
@@ -547,6 +970,34 @@ public class ApiBibleService {
         }
     }
 
+    public static class RequestStats {
+        public final long upstreamRequests;   // attempts actually sent to api.bible
+        public final long coalescedRequests;  // callers that joined a call already in flight
+        public final int inFlight;
+        public final long retries;
+        public final long rateLimited;        // rejected by the client-side rate limit
+        public final long circuitRejected;    // rejected while the circuit breaker was open
+        public final long staleServed;        // failures answered from stale cache
+        public final String circuitState;     // CLOSED, OPEN or HALF_OPEN
+        public final int consecutiveFailures;
+        public final long circuitOpened;      // times the breaker has tripped
+
+        public RequestStats(long upstreamRequests, long coalescedRequests, int inFlight, long retries,
+                            long rateLimited, long circuitRejected, long staleServed, String circuitState,
+                            int consecutiveFailures, long circuitOpened) {
+            this.upstreamRequests = upstreamRequests;
+            this.coalescedRequests = coalescedRequests;
+            this.inFlight = inFlight;
+            this.retries = retries;
+            this.rateLimited = rateLimited;
+            this.circuitRejected = circuitRejected;
+            this.staleServed = staleServed;
+            this.circuitState = circuitState;
+            this.consecutiveFailures = consecutiveFailures;
+            this.circuitOpened = circuitOpened;
+        }
+    }
+
     public static class SearchResult {
         public int total;
         public List<SearchVerse> verses;
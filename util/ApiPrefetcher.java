@@ -0,0 +1,316 @@
+package com.mybible.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ApiPrefetcher - Background warm-up of the api.bible passage cache
+ *
+ * Keeps the chapters readers are likely to ask for in ApiResponseCache so they
+ * are served at local-translation latency:
+ * - Warm-up: every cycle, the most-requested passages (from access counts that
+ *   are persisted across restarts), then well-known chapters for each
+ *   POPULAR_BIBLES translation - as many as fit in half the cycle's budget,
+ *   skipping those still fresh. The other half is left for read-ahead.
+ * - Read-ahead: when a chapter is requested, the next chapter of that book.
+ *
+ * Prefetching runs on one low-priority daemon thread with its own request
+ * budget (a small share of the api.bible rate limit), and only while the rate
+ * limiter has spare capacity and the circuit breaker is closed, so it never
+ * competes with reader requests. Its cache lookups are not counted in the
+ * cache hit rate.
+ *
+ * Usage:
+ *   apiBibleService.startPrefetch(2, Paths.get("/var/cache/mybible/access-stats.txt"));
+ *   // ApiBibleService.getPassage() reports accesses automatically
+ */
+public class ApiPrefetcher {
+
+    private static final long INITIAL_DELAY_SECONDS = 30;  // let startup traffic settle first
+    private static final long CYCLE_MINUTES = 10;
+    private static final int WARM_PASSAGES = 100;           // most-requested passages per cycle
+    private static final int MAX_TRACKED = 5000;
+    private static final int QUEUE_CAPACITY = 256;
+
+    // Warmed for every popular translation, most-read first
+    private static final String[] SEED_CHAPTERS = {
+        "JHN.3", "PSA.23", "GEN.1", "JHN.1", "ROM.8", "MAT.5", "PSA.91", "1CO.13",
+        "PRO.3", "PHP.4", "ISA.53", "EPH.2", "ROM.12", "PSA.1", "HEB.11", "MAT.6"
+    };
+
+    // api.bible book id -> chapters in that book
+    private static final Map<String, Integer> CHAPTERS_BY_BOOK_ID = new HashMap<>();
+    static {
+        for (int i = 0; i < BibleService.BOOK_ORDER.length; i++) {
+            String id = ApiBibleService.BOOK_IDS.get(BibleService.BOOK_ORDER[i]);
+            if (id != null) CHAPTERS_BY_BOOK_ID.put(id, BibleService.CHAPTER_COUNTS[i]);
+        }
+    }
+
+    private final ApiBibleService service;
+    private final int requestsPerMinute;
+    private final TokenBucket budget;
+    private final Path statsFile;  // null if access counts are not persisted
+
+    // "bibleId|passageId" -> requests, halved every cycle so old interest fades
+    private final ConcurrentHashMap<String, LongAdder> accessCounts = new ConcurrentHashMap<>();
+
+    private final LinkedBlockingQueue<String> queue = new LinkedBlockingQueue<>(QUEUE_CAPACITY);
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler;
+    private final Thread worker;
+    private volatile boolean running;
+
+    private final LongAdder prefetched = new LongAdder();
+    private final LongAdder alreadyCached = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * @param requestsPerMinute upstream requests prefetching may use
+     * @param statsFile where access counts are kept between restarts, or null
+     */
+    public ApiPrefetcher(ApiBibleService service, int requestsPerMinute, Path statsFile) {
+        this.service = service;
+        this.requestsPerMinute = requestsPerMinute;
+        this.budget = new TokenBucket(requestsPerMinute, Math.max(1, requestsPerMinute));
+        this.statsFile = statsFile;
+
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> newLowPriorityThread(r, "api-prefetch-scheduler"));
+        this.worker = newLowPriorityThread(this::runWorker, "api-prefetch");
+        loadAccessCounts();
+    }
+
+    private static Thread newLowPriorityThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    }
+
+    public void start() {
+        running = true;
+        worker.start();
+        scheduler.scheduleWithFixedDelay(this::warmUp, INITIAL_DELAY_SECONDS, CYCLE_MINUTES * 60, TimeUnit.SECONDS);
+        System.out.println("[ApiPrefetcher] Started (budget " + requestsPerMinute + "/min, " +
+            accessCounts.size() + " tracked passages)");
+    }
+
+    public void stop() {
+        running = false;
+        scheduler.shutdownNow();
+        worker.interrupt();
+        saveAccessCounts();
+    }
+
+    // ========================================================================
+    // Access Tracking
+    // ========================================================================
+
+    /**
+     * Called for every passage a reader requests; counts it and queues the
+     * next chapter for read-ahead
+     */
+    public void recordAccess(String bibleId, String passageId) {
+        String key = bibleId + "|" + passageId;
+        LongAdder count = accessCounts.get(key);
+        if (count == null && accessCounts.size() < MAX_TRACKED) {
+            count = accessCounts.computeIfAbsent(key, k -> new LongAdder());
+        }
+        if (count != null) count.increment();
+
+        String next = nextChapter(passageId);
+        if (next != null) enqueue(bibleId, next);
+    }
+
+    /**
+     * "JHN.3" -> "JHN.4"; null for the last chapter of a book or anything
+     * that is not a whole chapter
+     */
+    static String nextChapter(String passageId) {
+        int dot = passageId.indexOf('.');
+        if (dot <= 0 || passageId.indexOf('.', dot + 1) >= 0) return null;
+
+        Integer chapters = CHAPTERS_BY_BOOK_ID.get(passageId.substring(0, dot));
+        if (chapters == null) return null;
+        try {
+            int chapter = Integer.parseInt(passageId.substring(dot + 1));
+            return chapter >= 1 && chapter < chapters ? passageId.substring(0, dot + 1) + (chapter + 1) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private void enqueue(String bibleId, String passageId) {
+        String key = bibleId + "|" + passageId;
+        if (!queued.add(key)) return;
+        if (!queue.offer(key)) {
+            queued.remove(key);
+            dropped.increment();
+        }
+    }
+
+    // ========================================================================
+    // Warm-up Cycle
+    // ========================================================================
+
+    private void warmUp() {
+        try {
+            if (!service.isConfigured()) return;
+
+            List<Map.Entry<String, Long>> top = new ArrayList<>();
+            for (Map.Entry<String, LongAdder> entry : accessCounts.entrySet()) {
+                top.add(new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().sum()));
+            }
+            top.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+            // Most-requested first, then the seed chapters across every popular translation
+            List<String> candidates = new ArrayList<>();
+            for (int i = 0; i < Math.min(WARM_PASSAGES, top.size()); i++) {
+                candidates.add(top.get(i).getKey());
+            }
+            for (String chapter : SEED_CHAPTERS) {
+                for (String bibleId : ApiBibleService.POPULAR_BIBLES.values()) {
+                    candidates.add(bibleId + "|" + chapter);
+                }
+            }
+
+            // Queue only what this cycle's budget can fetch; work still queued counts against it
+            int slots = requestsPerMinute * (int) CYCLE_MINUTES / 2 - queue.size();
+            int queuedBefore = queue.size();
+            for (String key : candidates) {
+                if (slots <= 0) break;
+                int bar = key.indexOf('|');
+                String bibleId = key.substring(0, bar);
+                String passageId = key.substring(bar + 1);
+                if (queued.contains(key) || service.isPassageFresh(bibleId, passageId)) continue;
+                enqueue(bibleId, passageId);
+                slots--;
+            }
+            System.out.println("[ApiPrefetcher] Warm-up queued " + (queue.size() - queuedBefore) + " passages");
+
+            saveAccessCounts();
+            decayAccessCounts();
+        } catch (Exception e) {
+            System.err.println("[ApiPrefetcher] Warm-up failed: " + e.getMessage());
+        }
+    }
+
+    private void decayAccessCounts() {
+        for (Map.Entry<String, LongAdder> entry : accessCounts.entrySet()) {
+            long count = entry.getValue().sumThenReset();
+            if (count > 1) {
+                entry.getValue().add(count / 2);
+            } else {
+                accessCounts.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                String key = queue.take();
+                queued.remove(key);
+                int bar = key.indexOf('|');
+                String bibleId = key.substring(0, bar);
+                String passageId = key.substring(bar + 1);
+
+                if (service.isPassageFresh(bibleId, passageId)) {
+                    alreadyCached.increment();
+                    continue;
+                }
+                // Wait for both our own budget and spare capacity in the shared quota
+                while (!service.hasSpareCapacity() || !budget.tryAcquire()) {
+                    Thread.sleep(1000);
+                }
+                if (service.prefetchPassage(bibleId, passageId)) {
+                    prefetched.increment();
+                } else {
+                    failed.increment();  // no such passage in this translation
+                }
+            } catch (InterruptedException e) {
+                break;
+            } catch (IOException e) {
+                failed.increment();
+            } catch (RuntimeException e) {
+                failed.increment();
+                System.err.println("[ApiPrefetcher] Prefetch failed: " + e.getMessage());
+            }
+        }
+    }
+
+    // ========================================================================
+    // Persistence
+    // ========================================================================
+
+    private void loadAccessCounts() {
+        if (statsFile == null || !Files.isRegularFile(statsFile)) return;
+        try (BufferedReader reader = Files.newBufferedReader(statsFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null && accessCounts.size() < MAX_TRACKED) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) continue;
+                try {
+                    LongAdder count = new LongAdder();
+                    count.add(Long.parseLong(line.substring(0, tab)));
+                    accessCounts.put(line.substring(tab + 1), count);
+                } catch (NumberFormatException e) {
+                    // Skip malformed line
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("[ApiPrefetcher] WARNING: Could not read " + statsFile + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * One "count<TAB>bibleId|passageId" line per tracked passage
+     */
+    private void saveAccessCounts() {
+        if (statsFile == null) return;
+        Path temp = statsFile.resolveSibling(statsFile.getFileName() + ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<String, LongAdder> entry : accessCounts.entrySet()) {
+                    writer.write(entry.getValue().sum() + "\t" + entry.getKey());
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, statsFile, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.err.println("[ApiPrefetcher] WARNING: Could not write " + statsFile + ": " + e.getMessage());
+        }
+    }
+
+    // ========================================================================
+    // Metrics
+    // ========================================================================
+
+    public Stats getStats() {
+        return new Stats(prefetched.sum(), alreadyCached.sum(), failed.sum(), dropped.sum(),
+            queue.size(), accessCounts.size());
+    }
+
+    public static class Stats {
+        public final long prefetched;     // fresh copies fetched into the cache
+        public final long alreadyCached;  // queued but still fresh in the cache
+        public final long failed;
+        public final long dropped;        // read-ahead skipped because the queue was full
+        public final int queued;
+        public final int trackedPassages;
+
+        public Stats(long prefetched, long alreadyCached, long failed, long dropped, int queued, int trackedPassages) {
+            this.prefetched = prefetched;
+            this.alreadyCached = alreadyCached;
+            this.failed = failed;
+            this.dropped = dropped;
+            this.queued = queued;
+            this.trackedPassages = trackedPassages;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.mybible.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ApiResponseCache - Two-tier (memory + disk) cache of api.bible response bodies
+ *
+ * Keys are request endpoints ("/bibles/{bibleId}/passages/{passageId}?options"),
+ * so the Bible, passage and content options are all part of the key. The memory
+ * tier is a bounded LRU; the optional disk tier keeps entries across restarts.
+ * Every entry expires after the TTL in both tiers - api.bible licensing limits how
+ * long Scripture text may be stored, so keep the TTL within your license terms.
+ * get() only returns entries younger than the (shorter) freshness window; older
+ * ones remain available through getStale() for when api.bible is unreachable.
+ *
+ * Disk entries are one file per key, named by the SHA-256 of the key:
+ *   magic (int), stored-at millis (long), key (UTF), body length (int), UTF-8 body
+ *
+ * Usage:
+ *   ApiResponseCache cache = new ApiResponseCache(Paths.get("/var/cache/mybible"), 2000, ttlMs);
+ *   String body = cache.get(endpoint);
+ *   if (body == null) { body = fetch(endpoint); cache.put(endpoint, body); }
+ *   ...on fetch failure: body = cache.getStale(endpoint);
+ */
+public final class ApiResponseCache {
+
+    private static final int MAGIC = 0x4D594143; // "MYAC"
+
+    private final Path directory;  // null for memory only
+    private final int maxEntries;
+    private final long freshMs;
+    private final long ttlMs;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<String, Entry> memory = new LinkedHashMap<>(256, 0.75f, true);
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    private static class Entry {
+        final String body;
+        final long storedAt;
+
+        Entry(String body, long storedAt) {
+            this.body = body;
+            this.storedAt = storedAt;
+        }
+    }
+
+    /**
+     * Cache whose entries stay fresh for the whole TTL
+     */
+    public ApiResponseCache(Path directory, int maxEntries, long ttlMs) {
+        this(directory, maxEntries, ttlMs, ttlMs);
+    }
+
+    /**
+     * @param directory disk tier location, or null to cache in memory only
+     * @param maxEntries memory tier capacity
+     * @param freshMs age after which get() treats an entry as a miss
+     * @param ttlMs maximum age of an entry in either tier
+     */
+    public ApiResponseCache(Path directory, int maxEntries, long freshMs, long ttlMs) {
+        this.directory = directory;
+        this.maxEntries = maxEntries;
+        this.freshMs = Math.min(freshMs, ttlMs);
+        this.ttlMs = ttlMs;
+
+        if (directory != null) {
+            try {
+                Files.createDirectories(directory);
+                purgeExpired();
+            } catch (IOException e) {
+                System.err.println("[ApiResponseCache] WARNING: Disk cache unavailable: " + e.getMessage());
+            }
+        }
+    }
+
+    // ========================================================================
+    // Lookup
+    // ========================================================================
+
+    /**
+     * @return the cached body, or null if absent or older than the freshness window
+     */
+    public String get(String key) {
+        return lookup(key, true);
+    }
+
+    /**
+     * Same as get(), but not counted in the hit/miss stats - for background
+     * lookups (prefetch) that would otherwise skew the reader hit rate
+     */
+    public String peek(String key) {
+        return lookup(key, false);
+    }
+
+    private String lookup(String key, boolean counted) {
+        long now = System.currentTimeMillis();
+
+        Entry entry = memoryEntry(key, now);
+        if (entry != null) {
+            if (now - entry.storedAt < freshMs) {
+                if (counted) memoryHits.increment();
+                return entry.body;
+            }
+        } else {
+            entry = readDisk(key, now);
+            if (entry != null) {
+                putMemory(key, entry);
+                if (now - entry.storedAt < freshMs) {
+                    if (counted) diskHits.increment();
+                    return entry.body;
+                }
+            }
+        }
+
+        if (counted) misses.increment();
+        return null;
+    }
+
+    /**
+     * Fallback for when the upstream call fails: any entry still within the TTL
+     *
+     * @return the cached body, or null if absent or expired
+     */
+    public String getStale(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = memoryEntry(key, now);
+        if (entry == null) {
+            entry = readDisk(key, now);
+            if (entry == null) return null;
+            putMemory(key, entry);
+        }
+        staleHits.increment();
+        return entry.body;
+    }
+
+    /**
+     * True if get() would return the entry; does not count as a lookup
+     */
+    public boolean isFresh(String key) {
+        long now = System.currentTimeMillis();
+        Entry entry = memoryEntry(key, now);
+        if (entry == null) entry = readDisk(key, now);
+        return entry != null && now - entry.storedAt < freshMs;
+    }
+
+    private Entry memoryEntry(String key, long now) {
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry != null && now - entry.storedAt >= ttlMs) {
+                memory.remove(key);
+                expirations.increment();
+                return null;
+            }
+            return entry;
+        }
+    }
+
+    public void put(String key, String body) {
+        Entry entry = new Entry(body, System.currentTimeMillis());
+        putMemory(key, entry);
+        writeDisk(key, entry);
+    }
+
+    private void putMemory(String key, Entry entry) {
+        synchronized (memory) {
+            memory.put(key, entry);
+            Iterator<Entry> eldest = memory.values().iterator();
+            while (memory.size() > maxEntries && eldest.hasNext()) {
+                eldest.next();
+                eldest.remove();
+                evictions.increment();
+            }
+        }
+    }
+
+    // ========================================================================
+    // Disk Tier
+    // ========================================================================
+
+    private Entry readDisk(String key, long now) {
+        if (directory == null) return null;
+        Path file = fileFor(key);
+        if (!Files.isRegularFile(file)) return null;
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("bad magic");
+            long storedAt = in.readLong();
+            if (!key.equals(in.readUTF())) return null;  // hash collision - treat as a miss
+            if (now - storedAt < ttlMs) {
+                byte[] body = new byte[in.readInt()];
+                in.readFully(body);
+                return new Entry(new String(body, StandardCharsets.UTF_8), storedAt);
+            }
+        } catch (IOException e) {
+            System.err.println("[ApiResponseCache] WARNING: Dropping unreadable entry " + file.getFileName() +
+                ": " + e.getMessage());
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Best effort - the next write replaces it anyway
+            }
+            return null;
+        }
+
+        // Expired - deleted once the stream above is closed
+        try {
+            Files.deleteIfExists(file);
+            expirations.increment();
+        } catch (IOException e) {
+            // Best effort - purgeExpired() retries
+        }
+        return null;
+    }
+
+    private void writeDisk(String key, Entry entry) {
+        if (directory == null) return;
+        Path file = fileFor(key);
+        Path temp = file.resolveSibling(file.getFileName() + "." + Thread.currentThread().threadId() + ".tmp");
+
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                byte[] body = entry.body.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(MAGIC);
+                out.writeLong(entry.storedAt);
+                out.writeUTF(key);
+                out.writeInt(body.length);
+                out.write(body);
+            }
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("[ApiResponseCache] WARNING: Could not write cache entry: " + e.getMessage());
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                // Leftover temp files are removed by purgeExpired()
+            }
+        }
+    }
+
+    /**
+     * Delete expired and leftover temporary files from the disk tier
+     *
+     * @return the number of files removed
+     */
+    public int purgeExpired() throws IOException {
+        if (directory == null) return 0;
+        long now = System.currentTimeMillis();
+        int removed = 0;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean expired;
+                if (name.endsWith(".tmp")) {
+                    expired = true;
+                } else if (name.endsWith(".cache")) {
+                    expired = isExpiredOnDisk(file, now);
+                } else {
+                    continue;
+                }
+                if (expired && Files.deleteIfExists(file)) removed++;
+            }
+        }
+        if (removed > 0) {
+            System.out.println("[ApiResponseCache] Purged " + removed + " expired entries");
+        }
+        return removed;
+    }
+
+    private boolean isExpiredOnDisk(Path file, long now) {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            return in.readInt() != MAGIC || now - in.readLong() >= ttlMs;
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    private Path fileFor(String key) {
+        MessageDigest digest = TranslationSnapshot.newDigest();
+        byte[] hash = digest.digest(key.getBytes(StandardCharsets.UTF_8));
+        StringBuilder name = new StringBuilder(hash.length * 2 + 6);
+        for (byte b : hash) {
+            name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return directory.resolve(name.append(".cache").toString());
+    }
+
+    // ========================================================================
+    // Metrics
+    // ========================================================================
+
+    public Stats getStats() {
+        int entries;
+        synchronized (memory) {
+            entries = memory.size();
+        }
+        return new Stats(memoryHits.sum(), diskHits.sum(), staleHits.sum(), misses.sum(), evictions.sum(),
+            expirations.sum(), entries, maxEntries, freshMs, ttlMs, directory != null);
+    }
+
+    public static class Stats {
+        public final long memoryHits;
+        public final long diskHits;
+        public final long staleHits;   // served past freshness because upstream failed
+        public final long misses;
+        public final long evictions;
+        public final long expirations;
+        public final int memoryEntries;
+        public final int maxEntries;
+        public final long freshMs;
+        public final long ttlMs;
+        public final boolean diskEnabled;
+
+        public Stats(long memoryHits, long diskHits, long staleHits, long misses, long evictions, long expirations,
+                     int memoryEntries, int maxEntries, long freshMs, long ttlMs, boolean diskEnabled) {
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.staleHits = staleHits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.expirations = expirations;
+            this.memoryEntries = memoryEntries;
+            this.maxEntries = maxEntries;
+            this.freshMs = freshMs;
+            this.ttlMs = ttlMs;
+            this.diskEnabled = diskEnabled;
+        }
+
+        /**
+         * Fraction of lookups served from either tier (0 when there were none)
+         */
+        public double getHitRate() {
+            long lookups = memoryHits + diskHits + misses;
+            return lookups == 0 ? 0 : (double) (memoryHits + diskHits) / lookups;
+        }
+    }
+}
@@ -0,0 +1,436 @@
+package com.mybible.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * BibleJsonReader - Streaming single-pass reader for Bible translation JSON files
+ *
+ * Pulls the metadata fields and each verse's book_name/chapter/verse/text straight
+ * from a buffered character stream, so the file is never held in memory as one
+ * String and no per-verse substrings are created. Unlike a plain indexOf scan it
+ * is correct when verse text contains braces or escaped quotes, and it performs
+ * full JSON unescaping including \\uXXXX sequences.
+ *
+ * Usage:
+ *   try (BibleJsonReader reader = new BibleJsonReader(new FileInputStream(file))) {
+ *       reader.read(handler);
+ *   }
+ */
+public class BibleJsonReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives parsed content in document order
+     */
+    public interface Handler {
+        /**
+         * Called once with the scalar fields of the "metadata" object (values as text)
+         */
+        void metadata(Map<String, String> fields);
+
+        /**
+         * Called for each verse object. The text sequence is a reused buffer that
+         * is only valid for the duration of the call.
+         */
+        void verse(String book, int chapter, int verse, CharSequence text);
+    }
+
+    private final Reader in;
+    private final char[] buf = new char[BUFFER_SIZE];
+    private int pos = 0;
+    private int limit = 0;
+    private long consumed = 0;
+
+    // Reused scratch buffers - one for keys/short values, one for verse text
+    private final StringBuilder keyBuf = new StringBuilder(32);
+    private final StringBuilder textBuf = new StringBuilder(1024);
+
+    // Verses arrive grouped by book, so the previous name is reused when equal
+    private String lastBook;
+    private boolean sawVerses = false;
+
+    public BibleJsonReader(InputStream in) {
+        this.in = new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Parse the whole document, invoking the handler as values are read
+     *
+     * @throws IOException if the stream cannot be read or the JSON is malformed
+     */
+    public void read(Handler handler) throws IOException {
+        expect('{');
+        if (peekSignificant() == '}') {
+            next();
+            return;
+        }
+        while (true) {
+            readString(keyBuf);
+            expect(':');
+            String key = keyBuf.toString();
+            if ("metadata".equals(key) && peekSignificant() == '{') {
+                handler.metadata(readScalarObject());
+            } else if ("verses".equals(key) && peekSignificant() == '[') {
+                readVerses(handler);
+                sawVerses = true;
+            } else {
+                skipValue();
+            }
+            if (!nextMember('}')) break;
+        }
+    }
+
+    /**
+     * Read only the "metadata" object, stopping as soon as it has been parsed.
+     * Translation files put metadata first, so this touches only the file head.
+     *
+     * @return the metadata fields, or null if the document has none
+     */
+    public Map<String, String> readMetadata() throws IOException {
+        expect('{');
+        if (peekSignificant() == '}') return null;
+        while (true) {
+            readString(keyBuf);
+            expect(':');
+            if (isKey("metadata") && peekSignificant() == '{') {
+                return readScalarObject();
+            }
+            skipValue();
+            if (!nextMember('}')) return null;
+        }
+    }
+
+    /**
+     * @return true if a "verses" array was present in the document
+     */
+    public boolean sawVerses() {
+        return sawVerses;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    // ========================================================================
+    // Document Structure
+    // ========================================================================
+
+    private void readVerses(Handler handler) throws IOException {
+        expect('[');
+        if (peekSignificant() == ']') {
+            next();
+            return;
+        }
+        while (true) {
+            readVerse(handler);
+            if (!nextMember(']')) break;
+        }
+    }
+
+    private void readVerse(Handler handler) throws IOException {
+        expect('{');
+        String book = null;
+        int chapter = -1;
+        int verse = -1;
+        boolean hasText = false;
+        textBuf.setLength(0);
+
+        if (peekSignificant() != '}') {
+            while (true) {
+                readString(keyBuf);
+                expect(':');
+                if (isKey("book_name")) {
+                    book = readBookName();
+                } else if (isKey("chapter")) {
+                    chapter = readInt();
+                } else if (isKey("verse")) {
+                    verse = readInt();
+                } else if (isKey("text") && peekSignificant() == '"') {
+                    readString(textBuf);
+                    hasText = true;
+                } else {
+                    skipValue();
+                }
+                if (!nextMember('}')) break;
+            }
+        } else {
+            next();
+        }
+
+        if (book != null && chapter > 0 && verse > 0 && hasText) {
+            handler.verse(book, chapter, verse, textBuf);
+        }
+    }
+
+    private Map<String, String> readScalarObject() throws IOException {
+        Map<String, String> fields = new LinkedHashMap<>();
+        expect('{');
+        if (peekSignificant() == '}') {
+            next();
+            return fields;
+        }
+        while (true) {
+            readString(keyBuf);
+            expect(':');
+            String key = keyBuf.toString();
+            char c = peekSignificant();
+            if (c == '"') {
+                readString(textBuf);
+                fields.put(key, textBuf.toString());
+            } else if (c == '-' || (c >= '0' && c <= '9')) {
+                fields.put(key, readNumberText());
+            } else {
+                skipValue();
+            }
+            if (!nextMember('}')) break;
+        }
+        return fields;
+    }
+
+    private String readBookName() throws IOException {
+        if (peekSignificant() != '"') {
+            skipValue();
+            return null;
+        }
+        readString(keyBuf);
+        if (lastBook == null || !lastBook.contentEquals(keyBuf)) {
+            lastBook = keyBuf.toString();
+        }
+        return lastBook;
+    }
+
+    private boolean isKey(String key) {
+        return key.contentEquals(keyBuf);
+    }
+
+    /**
+     * Consume a ',' (returns true) or the closing character (returns false)
+     */
+    private boolean nextMember(char close) throws IOException {
+        char c = nextSignificant();
+        if (c == ',') return true;
+        if (c == close) return false;
+        throw error("expected ',' or '" + close + "'", c);
+    }
+
+    // ========================================================================
+    // Values
+    // ========================================================================
+
+    /**
+     * Read a JSON string into the given buffer, fully unescaped
+     */
+    private void readString(StringBuilder out) throws IOException {
+        expect('"');
+        out.setLength(0);
+        while (true) {
+            if (pos >= limit && !fill()) throw error("unterminated string", (char) 0);
+
+            // Copy runs of plain characters in bulk
+            int start = pos;
+            while (pos < limit) {
+                char c = buf[pos];
+                if (c == '"' || c == '\\') break;
+                pos++;
+            }
+            out.append(buf, start, pos - start);
+            if (pos >= limit) continue;
+
+            char c = buf[pos++];
+            if (c == '"') return;
+
+            char e = next();
+            switch (e) {
+                case '"':  out.append('"'); break;
+                case '\\': out.append('\\'); break;
+                case '/':  out.append('/'); break;
+                case 'b':  out.append('\b'); break;
+                case 'f':  out.append('\f'); break;
+                case 'n':  out.append('\n'); break;
+                case 'r':  out.append('\r'); break;
+                case 't':  out.append('\t'); break;
+                case 'u':  out.append(readHexChar()); break;
+                default:   throw error("invalid escape", e);
+            }
+        }
+    }
+
+    private char readHexChar() throws IOException {
+        int value = 0;
+        for (int i = 0; i < 4; i++) {
+            char h = next();
+            int digit = Character.digit(h, 16);
+            if (digit < 0) throw error("invalid \\u escape", h);
+            value = (value << 4) | digit;
+        }
+        return (char) value;
+    }
+
+    /**
+     * Read an integer given either as a number or as a quoted string of digits
+     */
+    private int readInt() throws IOException {
+        char c = peekSignificant();
+        if (c == '"') {
+            readString(keyBuf);
+            try {
+                return Integer.parseInt(keyBuf.toString().trim());
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+        if (c != '-' && (c < '0' || c > '9')) {
+            skipValue();
+            return -1;
+        }
+
+        boolean negative = false;
+        if (c == '-') {
+            negative = true;
+            next();
+        }
+        long value = 0;
+        while (true) {
+            if (pos >= limit && !fill()) break;
+            char d = buf[pos];
+            if (d < '0' || d > '9') break;
+            value = value * 10 + (d - '0');
+            if (value > Integer.MAX_VALUE) throw error("integer overflow", d);
+            pos++;
+        }
+        // Fractions and exponents are not valid chapter/verse numbers (refill so the peek sees the next chunk)
+        if ((pos < limit || fill()) && (buf[pos] == '.' || buf[pos] == 'e' || buf[pos] == 'E')) {
+            readNumberText();
+            return -1;
+        }
+        return negative ? (int) -value : (int) value;
+    }
+
+    private String readNumberText() throws IOException {
+        keyBuf.setLength(0);
+        while (true) {
+            if (pos >= limit && !fill()) break;
+            char c = buf[pos];
+            if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') {
+                keyBuf.append(c);
+                pos++;
+            } else {
+                break;
+            }
+        }
+        return keyBuf.toString();
+    }
+
+    /**
+     * Skip any JSON value, including nested objects and arrays
+     */
+    private void skipValue() throws IOException {
+        char c = peekSignificant();
+        switch (c) {
+            case '"':
+                skipString();
+                break;
+            case '{':
+            case '[':
+                skipContainer();
+                break;
+            case 't':
+                expectLiteral("true");
+                break;
+            case 'f':
+                expectLiteral("false");
+                break;
+            case 'n':
+                expectLiteral("null");
+                break;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumberText();
+                } else {
+                    throw error("unexpected character", c);
+                }
+        }
+    }
+
+    private void skipString() throws IOException {
+        expect('"');
+        while (true) {
+            char c = next();
+            if (c == '"') return;
+            if (c == '\\') next();
+        }
+    }
+
+    private void skipContainer() throws IOException {
+        int depth = 0;
+        while (true) {
+            char c = peekSignificant();
+            if (c == '"') {
+                skipString();
+                continue;
+            }
+            next();
+            if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) return;
+            }
+        }
+    }
+
+    private void expectLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            char c = next();
+            if (c != literal.charAt(i)) throw error("expected " + literal, c);
+        }
+    }
+
+    // ========================================================================
+    // Character Stream
+    // ========================================================================
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int n = in.read(buf, 0, buf.length);
+        if (n <= 0) return false;
+        limit = n;
+        return true;
+    }
+
+    private char next() throws IOException {
+        if (pos >= limit && !fill()) throw new EOFException("Unexpected end of JSON at offset " + (consumed + pos));
+        return buf[pos++];
+    }
+
+    private char peekSignificant() throws IOException {
+        while (true) {
+            if (pos >= limit && !fill()) throw new EOFException("Unexpected end of JSON at offset " + (consumed + pos));
+            char c = buf[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t' && c != '\uFEFF') return c;
+            pos++;
+        }
+    }
+
+    private char nextSignificant() throws IOException {
+        char c = peekSignificant();
+        pos++;
+        return c;
+    }
+
+    private void expect(char expected) throws IOException {
+        char c = nextSignificant();
+        if (c != expected) throw error("expected '" + expected + "'", c);
+    }
+
+    private IOException error(String message, char found) {
+        return new IOException("Malformed JSON at offset " + (consumed + pos) + ": " + message +
+            (found != 0 ? " (found '" + found + "')" : ""));
+    }
+}
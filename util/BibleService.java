@@ -1,9 +1,26 @@
 package com.mybible.util;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * BibleService - Loads and serves Bible translation data from JSON files
@@ -23,7 +40,26 @@ public class BibleService {
     private final Map<String, BibleTranslation> translations = new ConcurrentHashMap<>();
     private final Map<String, TranslationMetadata> metadata = new ConcurrentHashMap<>();
     private String biblesPath;
-    private boolean loaded = false;
+    private String snapshotPath;
+    private boolean offHeapText = false;
+    private volatile boolean loaded = false;
+
+    // Lazy loading: translation bodies load on first access and are evicted LRU
+    private boolean lazyLoading = false;
+    private long memoryBudgetBytes = Long.MAX_VALUE;
+    private final Map<String, File> sources = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<BibleTranslation>> inFlightLoads = new ConcurrentHashMap<>();
+    private final AtomicLong accessClock = new AtomicLong();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder cacheEvictions = new LongAdder();
+
+    // Hot reload: a watcher thread schedules debounced rebuilds of changed files
+    private static final long RELOAD_DEBOUNCE_MS = 500;
+    private Thread watcherThread;
+    private WatchService watchService;
+    private ScheduledExecutorService reloadExecutor;
+    private final Map<String, ScheduledFuture<?>> pendingReloads = new ConcurrentHashMap<>();
 
     // Standard book order (66 books)
     public static final String[] BOOK_ORDER = {
@@ -87,11 +123,48 @@ public class BibleService {
      */
     public void initialize(String path) {
         this.biblesPath = path;
+        if (this.snapshotPath == null) {
+            this.snapshotPath = new File(path, ".snapshots").getPath();
+        }
         System.out.println("[BibleService] Initialized with path: " + path);
     }
 
+    /**
+     * Set the directory for binary translation snapshots (default: biblesPath/.snapshots).
+     * Pass null to disable snapshots and always parse JSON.
+     */
+    public void setSnapshotPath(String path) {
+        this.snapshotPath = path;
+        System.out.println("[BibleService] Snapshot path: " + (path != null ? path : "(disabled)"));
+    }
+
+    /**
+     * Keep verse text outside the Java heap (memory-mapped from the snapshot, or
+     * in a direct buffer when loaded from JSON). The heap then holds only verse
+     * ids, offsets and the search index. Takes effect for translations loaded
+     * after the call.
+     */
+    public void setOffHeapText(boolean offHeapText) {
+        this.offHeapText = offHeapText;
+        System.out.println("[BibleService] Off-heap verse text: " + offHeapText);
+    }
+
+    /**
+     * Only scan translation metadata at startup and load each translation's
+     * verses on first access. Loaded translations are evicted least-recently-used
+     * first once their combined heap footprint exceeds the budget.
+     * Call before loadAllTranslations().
+     */
+    public void setLazyLoading(boolean lazyLoading, long memoryBudgetBytes) {
+        this.lazyLoading = lazyLoading;
+        this.memoryBudgetBytes = memoryBudgetBytes > 0 ? memoryBudgetBytes : Long.MAX_VALUE;
+        System.out.println("[BibleService] Lazy loading: " + lazyLoading +
+            (lazyLoading ? " (budget " + (memoryBudgetBytes / (1024 * 1024)) + "MB)" : ""));
+    }
+
     /**
      * Load all available translations from the bibles directory
+     * (metadata only when lazy loading is enabled)
      */
     public void loadAllTranslations() {
         if (biblesPath == null) {
@@ -111,140 +184,383 @@ public class BibleService {
             return;
         }
 
+        for (File file : files) {
+            sources.put(file.getName().replace(".json", ""), file);
+        }
+
+        if (lazyLoading) {
+            scanMetadata(files);
+            return;
+        }
+
         System.out.println("[BibleService] Loading " + files.length + " translation files...");
+        long start = System.currentTimeMillis();
 
-        for (File file : files) {
-            String code = file.getName().replace(".json", "");
-            try {
-                loadTranslation(code, file);
-            } catch (Exception e) {
-                System.err.println("[BibleService] ERROR loading " + code + ": " + e.getMessage());
+        // Parsing is CPU-bound, so use one worker per core (bounded by file count)
+        int threads = Math.max(1, Math.min(files.length, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "bible-loader-" + threadNumber.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (File file : files) {
+                String code = file.getName().replace(".json", "");
+                futures.add(executor.submit(() -> {
+                    try {
+                        loadTranslation(code, file);
+                    } catch (Exception e) {
+                        System.err.println("[BibleService] ERROR loading " + code + ": " + e.getMessage());
+                    }
+                }));
+            }
+
+            // Wait for every file before reporting the service as loaded
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    System.err.println("[BibleService] Interrupted while loading translations");
+                    return;
+                } catch (ExecutionException e) {
+                    System.err.println("[BibleService] ERROR loading translation: " + e.getCause());
+                }
             }
+        } finally {
+            executor.shutdown();
         }
 
         loaded = true;
-        System.out.println("[BibleService] Loaded " + translations.size() + " translations");
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("[BibleService] Loaded " + translations.size() + " translations in " + elapsed +
+            "ms (" + threads + " threads)");
     }
 
+    // ========================================================================
+    // Hot Reload
+    // ========================================================================
+
     /**
-     * Load a single translation from file
+     * Watch the bibles directory and rebuild translations whose JSON changes.
+     * Rebuilds run in the background and replace the old translation with a
+     * single map put, so readers never lock and never see a partial build.
+     * A file that fails to parse (e.g. still being copied) leaves the previous
+     * version in service.
      */
-    private void loadTranslation(String code, File file) throws IOException {
-        System.out.println("[BibleService] Loading " + code + "...");
-        long start = System.currentTimeMillis();
+    public synchronized void startWatching() {
+        if (watcherThread != null) return;
+        if (biblesPath == null) {
+            System.err.println("[BibleService] ERROR: biblesPath not set. Call initialize() first.");
+            return;
+        }
 
-        String content = new String(Files.readAllBytes(file.toPath()), "UTF-8");
+        Path dir = Paths.get(biblesPath);
+        try {
+            watchService = dir.getFileSystem().newWatchService();
+            dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            System.err.println("[BibleService] ERROR: Cannot watch " + biblesPath + ": " + e.getMessage());
+            return;
+        }
 
-        BibleTranslation translation = new BibleTranslation(code);
+        reloadExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "bible-reloader");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+
+        watcherThread = new Thread(this::watchLoop, "bible-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+        System.out.println("[BibleService] Watching " + biblesPath + " for translation changes");
+    }
 
-        // Parse metadata
-        TranslationMetadata meta = parseMetadata(content, code);
-        metadata.put(code, meta);
-        translation.setMetadata(meta);
+    public synchronized void stopWatching() {
+        if (watcherThread == null) return;
+        watcherThread.interrupt();
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            // Ignore close errors
+        }
+        reloadExecutor.shutdownNow();
+        watcherThread = null;
+    }
 
-        // Parse verses - simple parsing for flat array structure
-        int versesStart = content.indexOf("\"verses\":[");
-        if (versesStart == -1) {
-            throw new IOException("No verses array found in " + code);
+    private void watchLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+                String name = event.context().toString();
+                if (!name.endsWith(".json")) continue;
+                scheduleReload(name.replace(".json", ""));
+            }
+            if (!key.reset()) {
+                System.err.println("[BibleService] WARNING: Bibles directory no longer watchable");
+                return;
+            }
         }
+    }
 
-        // Parse each verse object
-        int pos = versesStart + 10;
-        while (pos < content.length()) {
-            int objStart = content.indexOf("{", pos);
-            if (objStart == -1) break;
+    /**
+     * Debounce: editors and copies emit several events per file
+     */
+    private void scheduleReload(String code) {
+        ScheduledFuture<?> next = reloadExecutor.schedule(() -> reload(code), RELOAD_DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = pendingReloads.put(code, next);
+        if (previous != null) previous.cancel(false);
+    }
 
-            int objEnd = content.indexOf("}", objStart);
-            if (objEnd == -1) break;
+    private void reload(String code) {
+        pendingReloads.remove(code);
+        File file = new File(biblesPath, code + ".json");
 
-            String verseJson = content.substring(objStart, objEnd + 1);
+        if (!file.exists()) {
+            sources.remove(code);
+            translations.remove(code);
+            metadata.remove(code);
+            System.out.println("[BibleService] Removed " + code + " (file deleted)");
+            return;
+        }
 
-            String bookName = extractJsonString(verseJson, "book_name");
-            int chapter = extractJsonInt(verseJson, "chapter");
-            int verse = extractJsonInt(verseJson, "verse");
-            String text = extractJsonString(verseJson, "text");
+        sources.put(code, file);
+        try {
+            if (lazyLoading && !translations.containsKey(code)) {
+                // Not resident - refresh the listing; verses load on next access
+                try (BibleJsonReader reader = new BibleJsonReader(
+                        new BufferedInputStream(new FileInputStream(file), 8 * 1024))) {
+                    metadata.put(code, parseMetadata(reader.readMetadata(), code));
+                }
+                System.out.println("[BibleService] Refreshed metadata for " + code);
+                return;
+            }
+            loadTranslation(code, file);
+            System.out.println("[BibleService] Reloaded " + code);
+        } catch (Exception e) {
+            System.err.println("[BibleService] ERROR reloading " + code + " (keeping previous version): " + e.getMessage());
+        }
+    }
 
-            if (bookName != null && chapter > 0 && verse > 0 && text != null) {
-                translation.addVerse(bookName, chapter, verse, text);
+    /**
+     * Read just the metadata of each file so translations can be listed
+     * without loading their verses
+     */
+    private void scanMetadata(File[] files) {
+        long start = System.currentTimeMillis();
+        for (File file : files) {
+            String code = file.getName().replace(".json", "");
+            try (BibleJsonReader reader = new BibleJsonReader(
+                    new BufferedInputStream(new FileInputStream(file), 8 * 1024))) {
+                metadata.put(code, parseMetadata(reader.readMetadata(), code));
+            } catch (IOException e) {
+                System.err.println("[BibleService] ERROR reading metadata for " + code + ": " + e.getMessage());
             }
+        }
+        loaded = true;
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("[BibleService] Scanned " + metadata.size() + " translations in " + elapsed +
+            "ms (verses load on first access)");
+    }
 
-            pos = objEnd + 1;
+    /**
+     * Find a loaded translation, loading it on demand in lazy mode.
+     * Concurrent first requests share one load (single-flight).
+     */
+    private BibleTranslation lookup(String translationCode) {
+        String code = translationCode.toLowerCase();
+        BibleTranslation t = translations.get(code);
+        if (t != null) {
+            cacheHits.increment();
+            if (lazyLoading) t.lastAccess = accessClock.incrementAndGet();
+            return t;
         }
+        if (!lazyLoading) return null;
 
-        translations.put(code, translation);
+        File file = sources.get(code);
+        if (file == null) return null;
 
-        long elapsed = System.currentTimeMillis() - start;
-        System.out.println("[BibleService] Loaded " + code + " (" + translation.getVerseCount() + " verses) in " + elapsed + "ms");
+        cacheMisses.increment();
+        CompletableFuture<BibleTranslation> mine = new CompletableFuture<>();
+        CompletableFuture<BibleTranslation> existing = inFlightLoads.putIfAbsent(code, mine);
+        if (existing != null) {
+            return awaitLoad(existing, code);
+        }
+
+        try {
+            // Another thread may have finished loading just before we registered
+            t = translations.get(code);
+            if (t == null) {
+                t = loadTranslation(code, file);
+                evictIfOverBudget(code);
+            }
+            t.lastAccess = accessClock.incrementAndGet();
+            mine.complete(t);
+            return t;
+        } catch (Exception e) {
+            System.err.println("[BibleService] ERROR loading " + code + ": " + e.getMessage());
+            mine.complete(null);
+            return null;
+        } finally {
+            inFlightLoads.remove(code, mine);
+        }
     }
 
-    private TranslationMetadata parseMetadata(String content, String code) {
-        int metaStart = content.indexOf("\"metadata\":{");
-        if (metaStart == -1) {
-            return new TranslationMetadata(code, code.toUpperCase(), code, "Unknown");
+    private BibleTranslation awaitLoad(CompletableFuture<BibleTranslation> load, String code) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            System.err.println("[BibleService] ERROR waiting for " + code + ": " + e.getMessage());
+            return null;
         }
+    }
 
-        int metaEnd = content.indexOf("}", metaStart);
-        String metaJson = content.substring(metaStart, metaEnd + 1);
+    /**
+     * Evict least-recently-used translations until the loaded set fits the budget.
+     * The translation just loaded is never evicted.
+     */
+    private synchronized void evictIfOverBudget(String keep) {
+        long total = 0;
+        for (BibleTranslation t : translations.values()) {
+            total += t.heapBytes();
+        }
+        while (total > memoryBudgetBytes) {
+            BibleTranslation victim = null;
+            for (BibleTranslation t : translations.values()) {
+                if (!t.code.equals(keep) && (victim == null || t.lastAccess < victim.lastAccess)) {
+                    victim = t;
+                }
+            }
+            if (victim == null) break;
+            // Metadata stays listed; the verses reload on next access
+            translations.remove(victim.code, victim);
+            total -= victim.heapBytes();
+            cacheEvictions.increment();
+            System.out.println("[BibleService] Evicted " + victim.code + " (" + (victim.heapBytes() / 1024) + "KB)");
+        }
+    }
 
-        String name = extractJsonString(metaJson, "name");
-        String shortname = extractJsonString(metaJson, "shortname");
-        String year = extractJsonString(metaJson, "year");
+    /**
+     * Load a single translation, from its snapshot when it matches the JSON
+     * source, otherwise by parsing the JSON and writing a fresh snapshot
+     */
+    private BibleTranslation loadTranslation(String code, File file) throws IOException {
+        System.out.println("[BibleService] Loading " + code + "...");
+        long start = System.currentTimeMillis();
 
-        return new TranslationMetadata(
-            code,
-            name != null ? name : code.toUpperCase(),
-            shortname != null ? shortname : code.toUpperCase(),
-            year != null ? year : "Unknown"
-        );
-    }
+        byte[] sourceHash = TranslationSnapshot.sha256(file.toPath());
+        String contentHash = toHex(sourceHash);
+        long lastModified = file.lastModified();
+        Path snapshot = snapshotPath != null ? Paths.get(snapshotPath, code + ".snapshot") : null;
 
-    private String extractJsonString(String json, String key) {
-        String pattern = "\"" + key + "\":\"";
-        int start = json.indexOf(pattern);
-        if (start == -1) return null;
+        if (snapshot != null) {
+            try {
+                TranslationSnapshot.Contents contents = TranslationSnapshot.read(snapshot, code, sourceHash, offHeapText);
+                if (contents != null) {
+                    BibleTranslation translation = new BibleTranslation(code, contents.metadata, contents.store,
+                        contents.index, contentHash, lastModified);
+                    publish(translation);
+                    long elapsed = System.currentTimeMillis() - start;
+                    System.out.println("[BibleService] Loaded " + code + " (" + translation.getVerseCount() +
+                        " verses) from snapshot in " + elapsed + "ms");
+                    return translation;
+                }
+            } catch (IOException e) {
+                System.err.println("[BibleService] WARNING: Ignoring snapshot for " + code + ": " + e.getMessage());
+            }
+        }
 
-        start += pattern.length();
-        int end = start;
-        while (end < json.length()) {
-            char c = json.charAt(end);
-            if (c == '"' && json.charAt(end - 1) != '\\') {
-                break;
+        BibleTranslation parsed = parseTranslation(code, file, contentHash, lastModified);
+        BibleTranslation translation = offHeapText
+            ? new BibleTranslation(code, parsed.metadata, parsed.store.withOffHeapText(), parsed.index,
+                contentHash, lastModified)
+            : parsed;
+        publish(translation);
+        long elapsed = System.currentTimeMillis() - start;
+        System.out.println("[BibleService] Loaded " + code + " (" + translation.getVerseCount() + " verses) in " + elapsed + "ms");
+
+        if (snapshot != null) {
+            try {
+                Files.createDirectories(snapshot.getParent());
+                TranslationSnapshot.write(snapshot, sourceHash, translation.metadata, translation.store, translation.index);
+            } catch (IOException e) {
+                System.err.println("[BibleService] WARNING: Could not write snapshot for " + code + ": " + e.getMessage());
             }
-            end++;
         }
+        return translation;
+    }
 
-        if (end > start) {
-            String value = json.substring(start, end);
-            // Unescape common escape sequences
-            value = value.replace("\\\"", "\"")
-                        .replace("\\/", "/")
-                        .replace("\\n", "\n")
-                        .replace("\\r", "\r")
-                        .replace("\\t", "\t");
-            return value;
+    /**
+     * Parse a translation's JSON and build its store and search index
+     */
+    private BibleTranslation parseTranslation(String code, File file, String contentHash, long lastModified)
+            throws IOException {
+        TranslationHandler handler = new TranslationHandler();
+
+        // Stream the file through the tokenizer - never held in memory as one String
+        boolean sawVerses;
+        try (BibleJsonReader reader = new BibleJsonReader(
+                new BufferedInputStream(new FileInputStream(file), 64 * 1024))) {
+            reader.read(handler);
+            sawVerses = reader.sawVerses();
         }
-        return null;
+
+        if (!sawVerses) {
+            throw new IOException("No verses array found in " + code);
+        }
+        if (handler.builder.getSkipped() > 0) {
+            System.err.println("[BibleService] WARNING: Skipped " + handler.builder.getSkipped() +
+                " out-of-range verses in " + code);
+        }
+
+        TranslationMetadata meta = parseMetadata(handler.metadataFields, code);
+        VerseStore store = handler.builder.build();
+        return new BibleTranslation(code, meta, store, SearchIndex.build(store), contentHash, lastModified);
     }
 
-    private int extractJsonInt(String json, String key) {
-        String pattern = "\"" + key + "\":";
-        int start = json.indexOf(pattern);
-        if (start == -1) return -1;
+    /**
+     * Publish the fully built translation before its metadata, so anything
+     * listed by getTranslations() is already readable
+     */
+    private void publish(BibleTranslation translation) {
+        translations.put(translation.code, translation);
+        metadata.put(translation.code, translation.metadata);
+    }
 
-        start += pattern.length();
-        int end = start;
-        while (end < json.length() && Character.isDigit(json.charAt(end))) {
-            end++;
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
         }
+        return hex.toString();
+    }
 
-        if (end > start) {
-            try {
-                return Integer.parseInt(json.substring(start, end));
-            } catch (NumberFormatException e) {
-                return -1;
-            }
+    private TranslationMetadata parseMetadata(Map<String, String> fields, String code) {
+        if (fields == null) {
+            return new TranslationMetadata(code, code.toUpperCase(), code, "Unknown");
         }
-        return -1;
+
+        String name = fields.get("name");
+        String shortname = fields.get("shortname");
+        String year = fields.get("year");
+
+        return new TranslationMetadata(
+            code,
+            name != null ? name : code.toUpperCase(),
+            shortname != null ? shortname : code.toUpperCase(),
+            year != null ? year : "Unknown"
+        );
     }
 
     // ========================================================================
@@ -258,11 +574,60 @@ public class BibleService {
         return new ArrayList<>(metadata.values());
     }
 
+    /**
+     * SHA-256 (hex) of a translation's source file. Changes exactly when the
+     * translation's content does, so it is usable as a strong HTTP ETag.
+     *
+     * @return the hash, or null if the translation is not available
+     */
+    public String getContentHash(String translationCode) {
+        BibleTranslation t = lookup(translationCode);
+        return t != null ? t.contentHash : null;
+    }
+
+    /**
+     * Modification time of the source file a translation was loaded from
+     *
+     * @return epoch millis, or 0 if the translation is not available
+     */
+    public long getLastModified(String translationCode) {
+        BibleTranslation t = lookup(translationCode);
+        return t != null ? t.lastModified : 0;
+    }
+
+    /**
+     * SHA-256 (hex) of the translation listing returned by getTranslations().
+     * Computed from metadata only, so it never forces a lazy load.
+     */
+    public String getCatalogHash() {
+        List<TranslationMetadata> list = getTranslations();
+        list.sort(Comparator.comparing(m -> m.code));
+        MessageDigest digest = TranslationSnapshot.newDigest();
+        for (TranslationMetadata m : list) {
+            String entry = m.code + '\0' + m.name + '\0' + m.shortName + '\0' + m.year + '\n';
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Latest modification time across all translation source files
+     *
+     * @return epoch millis, or 0 if there are none
+     */
+    public long getCatalogLastModified() {
+        long latest = 0;
+        for (File file : sources.values()) {
+            latest = Math.max(latest, file.lastModified());
+        }
+        return latest;
+    }
+
     /**
      * Get list of books for a translation
      */
     public List<String> getBooks(String translationCode) {
-        BibleTranslation t = translations.get(translationCode.toLowerCase());
+        BibleTranslation t = lookup(translationCode);
         if (t == null) return Arrays.asList(BOOK_ORDER);
         return t.getBooks();
     }
@@ -271,7 +636,7 @@ public class BibleService {
      * Get chapter count for a book
      */
     public int getChapterCount(String translationCode, String book) {
-        BibleTranslation t = translations.get(translationCode.toLowerCase());
+        BibleTranslation t = lookup(translationCode);
         if (t != null) {
             int count = t.getChapterCount(book);
             if (count > 0) return count;
@@ -293,7 +658,7 @@ public class BibleService {
      * Get a single verse
      */
     public Verse getVerse(String translationCode, String book, int chapter, int verse) {
-        BibleTranslation t = translations.get(translationCode.toLowerCase());
+        BibleTranslation t = lookup(translationCode);
         if (t == null) return null;
         return t.getVerse(book, chapter, verse);
     }
@@ -302,33 +667,124 @@ public class BibleService {
      * Get all verses in a chapter
      */
     public List<Verse> getChapter(String translationCode, String book, int chapter) {
-        BibleTranslation t = translations.get(translationCode.toLowerCase());
+        BibleTranslation t = lookup(translationCode);
         if (t == null) return Collections.emptyList();
         return t.getChapter(book, chapter);
     }
 
+    /**
+     * Get a chapter as ready-to-send UTF-8 JSON in the /api/bible/chapter shape:
+     * {"translation":..,"book":..,"chapter":N,"verses":[{"verse":n,"text":..},...]}
+     * Each chapter is rendered (and gzipped) once and cached with its translation,
+     * so a reload or eviction drops the cached bytes along with the text.
+     *
+     * @return the payload, or null if the translation or chapter is not available
+     */
+    public ChapterPayload getChapterPayload(String translationCode, String book, int chapter) {
+        BibleTranslation t = lookup(translationCode);
+        if (t == null) return null;
+        return t.getChapterPayload(book, chapter);
+    }
+
+    /**
+     * Resolve a batch of parsed references against one translation in a single
+     * pass. Each reference maps to a contiguous slice of the verse store.
+     *
+     * @param maxVerses cap on the total verses returned; later passages are truncated
+     * @return one passage per reference, in order (empty verses if unresolved or
+     *         the translation is not available)
+     */
+    public List<Passage> lookupReferences(String translationCode, List<ReferenceParser.Reference> references,
+                                          int maxVerses) {
+        BibleTranslation t = lookup(translationCode);
+        List<Passage> result = new ArrayList<>(references.size());
+        int remaining = maxVerses;
+        for (ReferenceParser.Reference ref : references) {
+            List<Verse> verses = t != null && ref.isValid()
+                ? t.getReference(ref, remaining + 1) : Collections.<Verse>emptyList();
+            boolean truncated = verses.size() > remaining;
+            if (truncated) verses = verses.subList(0, remaining);
+            remaining -= verses.size();
+            result.add(new Passage(ref, verses, truncated));
+        }
+        return result;
+    }
+
+    /**
+     * Stream a span of chapters as JSON, one chapter at a time, so memory use
+     * does not grow with the size of the range:
+     * {"translation":..,["book":..,"fromChapter":N,"toChapter":N,]"chapters":[
+     *   {"book":..,"chapter":N,"verses":[{"verse":n,"text":..},...]},...]}
+     *
+     * @param book the book, or null for the whole translation (chapter bounds ignored)
+     * @param fromChapter first chapter, inclusive
+     * @param toChapter last chapter, inclusive
+     * @return false (with nothing written) if the translation or book is not available
+     */
+    public boolean writeRangeJson(String translationCode, String book, int fromChapter, int toChapter,
+                                  OutputStream out) throws IOException {
+        BibleTranslation t = lookup(translationCode);
+        if (t == null) return false;
+        return t.writeRangeJson(book, fromChapter, toChapter, out);
+    }
+
+    /**
+     * Uncompressed form of getChapterPayload()
+     */
+    public byte[] getChapterJson(String translationCode, String book, int chapter) {
+        ChapterPayload payload = getChapterPayload(translationCode, book, chapter);
+        return payload != null ? payload.json : null;
+    }
+
     /**
      * Get a range of verses
      */
     public List<Verse> getVerseRange(String translationCode, String book, int chapter, int startVerse, int endVerse) {
-        BibleTranslation t = translations.get(translationCode.toLowerCase());
+        BibleTranslation t = lookup(translationCode);
         if (t == null) return Collections.emptyList();
         return t.getVerseRange(book, chapter, startVerse, endVerse);
     }
 
     /**
-     * Search for text across a translation
+     * Search a translation's index. Words are ANDed together; "quoted words"
+     * match as a phrase and word* matches by prefix. Results are in book order.
+     *
+     * @throws IllegalArgumentException if a prefix is too short (see SearchIndex)
      */
     public List<Verse> search(String translationCode, String query, int limit) {
-        BibleTranslation t = translations.get(translationCode.toLowerCase());
+        BibleTranslation t = lookup(translationCode);
         if (t == null) return Collections.emptyList();
         return t.search(query, limit);
     }
 
+    /**
+     * Search a translation ranked by BM25 relevance, best first. Each Verse
+     * carries its score; only the top limit matches are ever held.
+     *
+     * @throws IllegalArgumentException if a prefix is too short (see SearchIndex)
+     */
+    public List<Verse> searchRanked(String translationCode, String query, int limit) {
+        BibleTranslation t = lookup(translationCode);
+        if (t == null) return Collections.emptyList();
+        return t.searchRanked(query, limit);
+    }
+
     public boolean isLoaded() {
         return loaded;
     }
 
+    /**
+     * Translation cache counters (meaningful in lazy loading mode)
+     */
+    public CacheStats getCacheStats() {
+        long bytes = 0;
+        for (BibleTranslation t : translations.values()) {
+            bytes += t.heapBytes();
+        }
+        return new CacheStats(cacheHits.sum(), cacheMisses.sum(), cacheEvictions.sum(),
+            translations.size(), metadata.size(), bytes, lazyLoading ? memoryBudgetBytes : -1);
+    }
+
     // ========================================================================
     // Inner Classes
     // ========================================================================
@@ -347,17 +803,72 @@ public class BibleService {
         }
     }
 
+    public static class CacheStats {
+        public final long hits;
+        public final long misses;
+        public final long evictions;
+        public final int loadedTranslations;
+        public final int availableTranslations;
+        public final long loadedBytes;
+        public final long budgetBytes;  // -1 when every translation is kept loaded
+
+        public CacheStats(long hits, long misses, long evictions, int loadedTranslations,
+                          int availableTranslations, long loadedBytes, long budgetBytes) {
+            this.hits = hits;
+            this.misses = misses;
+            this.evictions = evictions;
+            this.loadedTranslations = loadedTranslations;
+            this.availableTranslations = availableTranslations;
+            this.loadedBytes = loadedBytes;
+            this.budgetBytes = budgetBytes;
+        }
+    }
+
+    /**
+     * A serialized chapter response. The arrays are shared - do not modify.
+     */
+    public static class ChapterPayload {
+        public final byte[] json;  // UTF-8 JSON
+        public final byte[] gzip;  // the same JSON, gzip-encoded
+
+        public ChapterPayload(byte[] json, byte[] gzip) {
+            this.json = json;
+            this.gzip = gzip;
+        }
+    }
+
+    /**
+     * The verses a reference resolved to
+     */
+    public static class Passage {
+        public final ReferenceParser.Reference reference;
+        public final List<Verse> verses;
+        public final boolean truncated;  // verse limit reached
+
+        public Passage(ReferenceParser.Reference reference, List<Verse> verses, boolean truncated) {
+            this.reference = reference;
+            this.verses = verses;
+            this.truncated = truncated;
+        }
+    }
+
     public static class Verse {
         public final String book;
         public final int chapter;
         public final int verse;
         public final String text;
+        public final double score;  // relevance score for ranked search, otherwise 0
 
         public Verse(String book, int chapter, int verse, String text) {
+            this(book, chapter, verse, text, 0);
+        }
+
+        public Verse(String book, int chapter, int verse, String text, double score) {
             this.book = book;
             this.chapter = chapter;
             this.verse = verse;
             this.text = text;
+            this.score = score;
         }
 
         public String getReference() {
@@ -365,119 +876,267 @@ public class BibleService {
         }
     }
 
-    private static class BibleTranslation {
-        private final String code;
-        private TranslationMetadata metadata;
-        // Map: book -> chapter -> verse -> text
-        private final Map<String, Map<Integer, Map<Integer, String>>> data = new LinkedHashMap<>();
-        private int verseCount = 0;
+    /**
+     * Collects streamed JSON content into a VerseStore builder
+     */
+    private static class TranslationHandler implements BibleJsonReader.Handler {
+        private final VerseStore.Builder builder = new VerseStore.Builder();
+        private Map<String, String> metadataFields;
 
-        public BibleTranslation(String code) {
-            this.code = code;
+        @Override
+        public void metadata(Map<String, String> fields) {
+            this.metadataFields = fields;
         }
 
-        public void setMetadata(TranslationMetadata meta) {
-            this.metadata = meta;
+        @Override
+        public void verse(String book, int chapter, int verse, CharSequence text) {
+            // Encoded straight into the text arena - no per-verse String
+            builder.add(book, chapter, verse, text);
         }
+    }
 
-        public void addVerse(String book, int chapter, int verse, String text) {
-            data.computeIfAbsent(book, k -> new TreeMap<>())
-                .computeIfAbsent(chapter, k -> new TreeMap<>())
-                .put(verse, text);
-            verseCount++;
+    /**
+     * Immutable translation backed by a packed VerseStore and its search index
+     */
+    private static class BibleTranslation {
+        private final String code;
+        private final TranslationMetadata metadata;
+        private final VerseStore store;
+        private final SearchIndex index;
+        private final String contentHash;  // SHA-256 hex of the source JSON
+        private final long lastModified;
+        private volatile long lastAccess;  // LRU clock stamp, lazy mode only
+
+        // Serialized chapter responses, indexed by VerseStore chapter index
+        private final AtomicReferenceArray<ChapterPayload> chapterPayloads;
+        private final AtomicLong chapterPayloadBytes = new AtomicLong();
+
+        public BibleTranslation(String code, TranslationMetadata metadata, VerseStore store, SearchIndex index,
+                                String contentHash, long lastModified) {
+            this.code = code;
+            this.metadata = metadata;
+            this.store = store;
+            this.index = index;
+            this.contentHash = contentHash;
+            this.lastModified = lastModified;
+            this.chapterPayloads = new AtomicReferenceArray<>(store.getTotalChapterCount());
         }
 
         public int getVerseCount() {
-            return verseCount;
+            return store.getVerseCount();
+        }
+
+        public long heapBytes() {
+            return store.heapBytes() + index.heapBytes() + chapterPayloadBytes.get();
         }
 
         public List<String> getBooks() {
             // Return in standard order, filtering to what's available
             List<String> result = new ArrayList<>();
-            for (String book : BOOK_ORDER) {
-                if (data.containsKey(book)) {
-                    result.add(book);
+            for (int i = 0; i < BOOK_ORDER.length; i++) {
+                if (store.getChapterCount(i + 1) > 0) {
+                    result.add(BOOK_ORDER[i]);
                 }
             }
             return result;
         }
 
         public int getChapterCount(String book) {
-            Map<Integer, Map<Integer, String>> chapters = data.get(book);
-            if (chapters == null) return 0;
-            return chapters.size();
+            return store.getChapterCount(store.bookNumber(book));
         }
 
         public Verse getVerse(String book, int chapter, int verse) {
-            Map<Integer, Map<Integer, String>> chapters = data.get(book);
-            if (chapters == null) return null;
+            int ordinal = store.find(store.bookNumber(book), chapter, verse);
+            if (ordinal < 0) return null;
+            return toVerse(ordinal);
+        }
+
+        public List<Verse> getChapter(String book, int chapter) {
+            int c = store.chapterIndex(store.bookNumber(book), chapter);
+            if (c < 0) return new ArrayList<>();
+
+            int start = store.chapterStart(c);
+            int end = store.chapterEnd(c);
+            List<Verse> result = new ArrayList<>(end - start);
+            for (int i = start; i < end; i++) {
+                result.add(toVerse(i));
+            }
+            return result;
+        }
 
-            Map<Integer, String> verses = chapters.get(chapter);
-            if (verses == null) return null;
+        public ChapterPayload getChapterPayload(String book, int chapter) {
+            int c = store.chapterIndex(store.bookNumber(book), chapter);
+            if (c < 0) return null;
 
-            String text = verses.get(verse);
-            if (text == null) return null;
+            ChapterPayload payload = chapterPayloads.get(c);
+            if (payload != null) return payload;
 
-            return new Verse(book, chapter, verse, text);
+            // Rendering is deterministic, so if two requests race the loser's copy is dropped
+            byte[] json = renderChapterJson(c);
+            payload = new ChapterPayload(json, gzip(json));
+            if (chapterPayloads.compareAndSet(c, null, payload)) {
+                chapterPayloadBytes.addAndGet(payload.json.length + payload.gzip.length);
+                return payload;
+            }
+            return chapterPayloads.get(c);
         }
 
-        public List<Verse> getChapter(String book, int chapter) {
-            List<Verse> result = new ArrayList<>();
+        /**
+         * Compressed once per chapter, so spend the extra CPU on the best ratio
+         */
+        private static byte[] gzip(byte[] data) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+                { def.setLevel(Deflater.BEST_COMPRESSION); }
+            }) {
+                gzip.write(data);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return out.toByteArray();
+        }
 
-            Map<Integer, Map<Integer, String>> chapters = data.get(book);
-            if (chapters == null) return result;
+        private byte[] renderChapterJson(int c) {
+            int start = store.chapterStart(c);
+            int end = store.chapterEnd(c);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(64 + (end - start) * 160);
+            writeAscii(out, "{\"translation\":\"");
+            writeJsonString(out, code);
+            writeAscii(out, "\",");
+            writeChapterFields(c, out);
+            out.write('}');
+            return out.toByteArray();
+        }
 
-            Map<Integer, String> verses = chapters.get(chapter);
-            if (verses == null) return result;
+        /**
+         * @param limit stop after this many verses
+         */
+        public List<Verse> getReference(ReferenceParser.Reference ref, int limit) {
+            int b = store.bookNumber(ref.book);
+            if (b == 0) return new ArrayList<>();
+
+            int endVerse = ref.endVerse > 0 ? ref.endVerse : VerseStore.MAX_VERSE;
+            int from = store.ordinalAtOrAfter(VerseStore.encode(b, ref.startChapter, ref.startVerse));
+            int to = store.ordinalAtOrAfter(VerseStore.encode(b, ref.endChapter, endVerse) + 1);
+            to = Math.min(to, from + Math.max(limit, 0));
+
+            List<Verse> result = new ArrayList<>(Math.max(to - from, 0));
+            for (int i = from; i < to; i++) {
+                result.add(toVerse(i));
+            }
+            return result;
+        }
 
-            for (Map.Entry<Integer, String> entry : verses.entrySet()) {
-                result.add(new Verse(book, chapter, entry.getKey(), entry.getValue()));
+        public boolean writeRangeJson(String book, int fromChapter, int toChapter, OutputStream out)
+                throws IOException {
+            int first;
+            int end;
+            if (book == null) {
+                first = 0;
+                end = store.getTotalChapterCount();
+            } else {
+                int b = store.bookNumber(book);
+                if (b == 0) return false;
+                first = store.chapterIndexAtOrAfter(b, Math.max(fromChapter, 1));
+                end = store.chapterIndexAtOrAfter(b, Math.min(toChapter, VerseStore.MAX_CHAPTER) + 1);
             }
 
-            return result;
+            // One chapter is buffered at a time, then handed to the output stream
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(16 * 1024);
+            writeAscii(buffer, "{\"translation\":\"");
+            writeJsonString(buffer, code);
+            writeAscii(buffer, "\",");
+            if (book != null) {
+                writeAscii(buffer, "\"book\":\"");
+                writeJsonString(buffer, book);
+                writeAscii(buffer, "\",\"fromChapter\":" + fromChapter + ",\"toChapter\":" + toChapter + ",");
+            }
+            writeAscii(buffer, "\"chapters\":[");
+            for (int c = first; c < end; c++) {
+                if (c > first) buffer.write(',');
+                buffer.write('{');
+                writeChapterFields(c, buffer);
+                buffer.write('}');
+                buffer.writeTo(out);
+                buffer.reset();
+            }
+            writeAscii(buffer, "]}");
+            buffer.writeTo(out);
+            return true;
+        }
+
+        /**
+         * "book":..,"chapter":N,"verses":[...] for one chapter
+         */
+        private void writeChapterFields(int c, ByteArrayOutputStream out) {
+            int start = store.chapterStart(c);
+            int end = store.chapterEnd(c);
+            writeAscii(out, "\"book\":\"");
+            writeJsonString(out, store.bookAt(start));
+            writeAscii(out, "\",\"chapter\":" + store.chapterAt(start) + ",\"verses\":[");
+            for (int i = start; i < end; i++) {
+                if (i > start) out.write(',');
+                writeAscii(out, "{\"verse\":" + store.verseAt(i) + ",\"text\":\"");
+                store.writeJsonText(i, out);
+                writeAscii(out, "\"}");
+            }
+            out.write(']');
+        }
+
+        private static void writeAscii(ByteArrayOutputStream out, String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private static void writeJsonString(ByteArrayOutputStream out, String s) {
+            String escaped = s.replace("\\", "\\\\")
+                              .replace("\"", "\\\"")
+                              .replace("\n", "\\n")
+                              .replace("\r", "\\r")
+                              .replace("\t", "\\t");
+            byte[] bytes = escaped.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
         }
 
         public List<Verse> getVerseRange(String book, int chapter, int startVerse, int endVerse) {
             List<Verse> result = new ArrayList<>();
 
-            Map<Integer, Map<Integer, String>> chapters = data.get(book);
-            if (chapters == null) return result;
+            int c = store.chapterIndex(store.bookNumber(book), chapter);
+            if (c < 0) return result;
 
-            Map<Integer, String> verses = chapters.get(chapter);
-            if (verses == null) return result;
-
-            for (int v = startVerse; v <= endVerse; v++) {
-                String text = verses.get(v);
-                if (text != null) {
-                    result.add(new Verse(book, chapter, v, text));
+            int end = store.chapterEnd(c);
+            for (int i = store.chapterStart(c); i < end; i++) {
+                int v = store.verseAt(i);
+                if (v > endVerse) break;
+                if (v >= startVerse) {
+                    result.add(toVerse(i));
                 }
             }
-
             return result;
         }
 
         public List<Verse> search(String query, int limit) {
-            List<Verse> result = new ArrayList<>();
-            String lowerQuery = query.toLowerCase();
-
-            outer:
-            for (Map.Entry<String, Map<Integer, Map<Integer, String>>> bookEntry : data.entrySet()) {
-                String book = bookEntry.getKey();
-                for (Map.Entry<Integer, Map<Integer, String>> chapterEntry : bookEntry.getValue().entrySet()) {
-                    int chapter = chapterEntry.getKey();
-                    for (Map.Entry<Integer, String> verseEntry : chapterEntry.getValue().entrySet()) {
-                        int verse = verseEntry.getKey();
-                        String text = verseEntry.getValue();
-
-                        if (text.toLowerCase().contains(lowerQuery)) {
-                            result.add(new Verse(book, chapter, verse, text));
-                            if (result.size() >= limit) break outer;
-                        }
-                    }
-                }
+            int[] hits = index.search(query, limit);
+            List<Verse> result = new ArrayList<>(hits.length);
+            for (int ordinal : hits) {
+                result.add(toVerse(ordinal));
             }
+            return result;
+        }
 
+        public List<Verse> searchRanked(String query, int limit) {
+            SearchIndex.RankedHits hits = index.searchRanked(query, limit);
+            List<Verse> result = new ArrayList<>(hits.count);
+            for (int i = 0; i < hits.count; i++) {
+                int ordinal = hits.ordinals[i];
+                result.add(new Verse(store.bookAt(ordinal), store.chapterAt(ordinal), store.verseAt(ordinal),
+                    store.textAt(ordinal), hits.scores[i]));
+            }
             return result;
         }
+
+        private Verse toVerse(int ordinal) {
+            return new Verse(store.bookAt(ordinal), store.chapterAt(ordinal), store.verseAt(ordinal), store.textAt(ordinal));
+        }
     }
 }
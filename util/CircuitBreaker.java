@@ -0,0 +1,114 @@
+package com.mybible.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CircuitBreaker - Fail fast while a remote service is unhealthy
+ *
+ * CLOSED: requests pass; consecutive failures are counted.
+ * OPEN: after `failureThreshold` consecutive failures, requests are rejected
+ *       without calling the service for `openMs`.
+ * HALF_OPEN: once the open period ends, one trial request is let through.
+ *       Success closes the breaker, failure opens it again. A trial that never
+ *       reports back is replaced by a new one after another `openMs`; a
+ *       caller that is granted the trial but never sends it calls releaseTrial().
+ *
+ * Usage:
+ *   if (!breaker.allowRequest()) throw new IOException("Service unavailable");
+ *   try { call(); breaker.recordSuccess(); }
+ *   catch (IOException e) { breaker.recordFailure(); throw e; }
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openMs;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private long trialStartedAt;
+
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timesOpened = new LongAdder();
+
+    public CircuitBreaker(String name, int failureThreshold, long openMs) {
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openMs = openMs;
+    }
+
+    /**
+     * @return true if the caller may contact the service now
+     */
+    public synchronized boolean allowRequest() {
+        long now = System.currentTimeMillis();
+        switch (state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (now - openedAt >= openMs) {
+                    state = State.HALF_OPEN;
+                    trialStartedAt = now;
+                    System.out.println("[CircuitBreaker] " + name + " half-open, sending a trial request");
+                    return true;
+                }
+                break;
+            case HALF_OPEN:
+                if (now - trialStartedAt >= openMs) {
+                    trialStartedAt = now;
+                    return true;
+                }
+                break;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Give back a HALF_OPEN trial that was granted but not sent (e.g. rate
+     * limited), so the next caller can make it instead of waiting another openMs
+     */
+    public synchronized void releaseTrial() {
+        if (state == State.HALF_OPEN) {
+            trialStartedAt = System.currentTimeMillis() - openMs;
+        }
+    }
+
+    public synchronized void recordSuccess() {
+        if (state != State.CLOSED) {
+            System.out.println("[CircuitBreaker] " + name + " closed");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+    }
+
+    public synchronized void recordFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            timesOpened.increment();
+            System.err.println("[CircuitBreaker] " + name + " OPEN after " + consecutiveFailures +
+                " consecutive failures - failing fast for " + (openMs / 1000) + "s");
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getTimesOpened() {
+        return timesOpened.sum();
+    }
+}
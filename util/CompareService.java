@@ -0,0 +1,176 @@
+package com.mybible.util;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * CompareService - Side-by-side chapter comparison across translations
+ *
+ * Fetches one chapter from several translations at once: local translations
+ * from BibleService, each on its own virtual thread, and api.bible
+ * translations through the non-blocking ApiBibleService.getPassageAsync().
+ * Every source has its own deadline, so a slow external API cannot hold up the
+ * local results - it is reported as timed out instead. Results are merged into
+ * verse-aligned rows.
+ *
+ * Translation specs follow the /read page convention:
+ *   "kjv" or "local:kjv"       local JSON translation
+ *   "api:<bibleId>"            api.bible translation (POPULAR_BIBLES keys such as "api:NIV" work too)
+ *
+ * Usage:
+ *   CompareService.getInstance()
+ *       .compareChapter(Arrays.asList("kjv", "api:NIV"), "John", 3)
+ *       .thenAccept(comparison -> ...);
+ */
+public class CompareService {
+
+    private static CompareService instance;
+
+    public static final int MAX_SOURCES = 8;
+    private static final long LOCAL_TIMEOUT_MS = 3000;   // covers a lazy translation load
+    private static final long REMOTE_TIMEOUT_MS = 4000;
+
+    private final BibleService bibleService;
+    private final ApiBibleService apiBibleService;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private CompareService(BibleService bibleService, ApiBibleService apiBibleService) {
+        this.bibleService = bibleService;
+        this.apiBibleService = apiBibleService;
+    }
+
+    public static synchronized CompareService getInstance() {
+        if (instance == null) {
+            instance = new CompareService(BibleService.getInstance(), ApiBibleService.getInstance());
+        }
+        return instance;
+    }
+
+    // ========================================================================
+    // Comparison
+    // ========================================================================
+
+    /**
+     * Fetch a chapter from every translation concurrently and align by verse.
+     * Completes once every source has answered or hit its deadline; api.bible
+     * sources are awaited without holding a thread.
+     *
+     * @param translations translation specs, in display order (at most MAX_SOURCES)
+     */
+    public CompletableFuture<Comparison> compareChapter(List<String> translations, String book, int chapter) {
+        long start = System.nanoTime();
+
+        List<CompletableFuture<SourceResult>> results = new ArrayList<>(translations.size());
+        for (String spec : translations) {
+            boolean remote = isRemote(spec);
+            CompletableFuture<Map<Integer, String>> verses = remote
+                ? fetchRemote(spec, book, chapter)
+                : CompletableFuture.supplyAsync(() -> fetchLocal(spec, book, chapter), executor);
+            results.add(verses
+                .orTimeout(remote ? REMOTE_TIMEOUT_MS : LOCAL_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                .handle((found, error) -> toResult(spec, remote, found, error, start)));
+        }
+
+        return CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            List<SourceResult> sources = new ArrayList<>(results.size());
+            TreeSet<Integer> verseNumbers = new TreeSet<>();
+            for (CompletableFuture<SourceResult> result : results) {
+                SourceResult source = result.join();
+                verseNumbers.addAll(source.verses.keySet());
+                sources.add(source);
+            }
+            return new Comparison(book, chapter, sources, new ArrayList<>(verseNumbers));
+        });
+    }
+
+    private static SourceResult toResult(String spec, boolean remote, Map<Integer, String> found,
+                                         Throwable error, long start) {
+        String status;
+        String message = null;
+        Map<Integer, String> verses = Collections.emptyMap();
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause == null) {
+            verses = found;
+            status = verses.isEmpty() ? "not_found" : "ok";
+        } else if (cause instanceof TimeoutException) {
+            status = "timeout";
+            System.err.println("[CompareService] " + spec + " timed out");
+        } else {
+            status = "error";
+            message = cause.getMessage();
+            System.err.println("[CompareService] " + spec + " failed: " + message);
+        }
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return new SourceResult(spec, remote ? "api" : "local", status, message, elapsedMs, verses);
+    }
+
+    private CompletableFuture<Map<Integer, String>> fetchRemote(String spec, String book, int chapter) {
+        if (!apiBibleService.isConfigured()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("External Bible API not configured"));
+        }
+        String bibleId = spec.substring(spec.indexOf(':') + 1);
+        String popular = ApiBibleService.POPULAR_BIBLES.get(bibleId.toUpperCase());
+        if (popular != null) bibleId = popular;
+
+        return apiBibleService.getPassageAsync(bibleId, ApiBibleService.bookNameToId(book) + "." + chapter)
+            .thenApply(passage -> passage == null || passage.content == null
+                ? Collections.<Integer, String>emptyMap()
+                : ApiBibleService.parseVerses(passage.content));
+    }
+
+    private Map<Integer, String> fetchLocal(String spec, String book, int chapter) {
+        String code = spec.startsWith("local:") ? spec.substring(6) : spec;
+        Map<Integer, String> verses = new LinkedHashMap<>();
+        for (BibleService.Verse v : bibleService.getChapter(code, book, chapter)) {
+            verses.put(v.verse, v.text);
+        }
+        return verses;
+    }
+
+    private static boolean isRemote(String spec) {
+        return spec.startsWith("api:");
+    }
+
+    // ========================================================================
+    // Data Classes
+    // ========================================================================
+
+    public static class SourceResult {
+        public final String translation;
+        public final String source;      // "local" or "api"
+        public final String status;      // "ok", "not_found", "timeout" or "error"
+        public final String error;
+        public final long elapsedMs;
+        public final Map<Integer, String> verses;
+
+        public SourceResult(String translation, String source, String status, String error,
+                            long elapsedMs, Map<Integer, String> verses) {
+            this.translation = translation;
+            this.source = source;
+            this.status = status;
+            this.error = error;
+            this.elapsedMs = elapsedMs;
+            this.verses = verses;
+        }
+    }
+
+    public static class Comparison {
+        public final String book;
+        public final int chapter;
+        public final List<SourceResult> sources;
+        public final List<Integer> verseNumbers;  // union across sources, ascending
+
+        public Comparison(String book, int chapter, List<SourceResult> sources, List<Integer> verseNumbers) {
+            this.book = book;
+            this.chapter = chapter;
+            this.sources = sources;
+            this.verseNumbers = verseNumbers;
+        }
+    }
+}
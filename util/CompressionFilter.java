@@ -0,0 +1,263 @@
+package com.mybible.util;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * CompressionFilter - gzip response bodies for clients that accept it
+ *
+ * Compresses JSON, HTML and other text responses on the fly. Servlets that
+ * already hold a compressed body (the cached chapter payloads) set
+ * Content-Encoding themselves and are passed through untouched. Strong ETags
+ * on compressed responses get the HttpCacheUtil gzip suffix.
+ *
+ * Async servlets (request.startAsync(request, response)) write through the
+ * same wrapper after doFilter returns, so the gzip trailer is left to them:
+ * close the response writer or stream before AsyncContext.complete().
+ *
+ * Usage:
+ *   context.addFilter(new FilterHolder(new CompressionFilter()), "/*",
+ *       EnumSet.of(DispatcherType.REQUEST));
+ */
+public class CompressionFilter implements Filter {
+
+    /** Bodies known to be smaller than this are sent as-is */
+    private static final int MIN_COMPRESS_SIZE = 512;
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+
+        response.addHeader("Vary", "Accept-Encoding");
+        if (!acceptsGzip(request)) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        GzipResponse gzipResponse = new GzipResponse(response);
+        boolean async = false;
+        try {
+            chain.doFilter(request, gzipResponse);
+            async = request.isAsyncStarted();
+        } finally {
+            // An async body is still to come; closing its writer finishes the stream
+            if (!async) gzipResponse.finish();
+        }
+        if (async) return;
+
+        // A 304 has no body, but its ETag must name the variant the client holds
+        if (response.getStatus() == HttpServletResponse.SC_NOT_MODIFIED && !response.isCommitted()) {
+            String etag = response.getHeader("ETag");
+            if (etag != null) response.setHeader("ETag", HttpCacheUtil.gzipETag(etag));
+        }
+    }
+
+    /**
+     * True if the request's Accept-Encoding allows gzip (and does not give it q=0)
+     */
+    public static boolean acceptsGzip(HttpServletRequest request) {
+        String header = request.getHeader("Accept-Encoding");
+        if (header == null) return false;
+
+        for (String part : header.split(",")) {
+            int semi = part.indexOf(';');
+            String coding = (semi >= 0 ? part.substring(0, semi) : part).trim();
+            if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) continue;
+
+            if (semi < 0) return true;
+            String params = part.substring(semi + 1).trim();
+            if (!params.startsWith("q=")) return true;
+            try {
+                return Double.parseDouble(params.substring(2).trim()) > 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isCompressible(String contentType) {
+        if (contentType == null) return false;
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/")
+            || type.startsWith("application/json")
+            || type.startsWith("application/javascript")
+            || type.startsWith("application/xml")
+            || type.startsWith("image/svg+xml");
+    }
+
+    // ========================================================================
+    // Response Wrapper
+    // ========================================================================
+
+    /**
+     * Decides whether to compress when the body is first written, once the
+     * servlet has set its content type, length and headers
+     */
+    private static class GzipResponse extends HttpServletResponseWrapper {
+        private final HttpServletResponse response;
+        private long contentLength = -1;
+        private Boolean compressing;
+        private GzipOutputStream gzipStream;
+        private ServletOutputStream stream;
+        private PrintWriter writer;
+
+        GzipResponse(HttpServletResponse response) {
+            super(response);
+            this.response = response;
+        }
+
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            // Held back until we know whether the body will be compressed
+            contentLength = length;
+            if (Boolean.FALSE.equals(compressing)) response.setContentLengthLong(length);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (writer != null) throw new IllegalStateException("getWriter() already called");
+            if (stream == null) {
+                if (decide()) {
+                    gzipStream = new GzipOutputStream(response.getOutputStream());
+                    stream = gzipStream;
+                } else {
+                    stream = response.getOutputStream();
+                }
+            }
+            return stream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (stream != null) throw new IllegalStateException("getOutputStream() already called");
+                if (decide()) {
+                    gzipStream = new GzipOutputStream(response.getOutputStream());
+                    writer = new PrintWriter(new OutputStreamWriter(gzipStream, response.getCharacterEncoding()));
+                } else {
+                    writer = response.getWriter();
+                }
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) writer.flush();
+            if (gzipStream != null) gzipStream.flush();
+            super.flushBuffer();
+        }
+
+        @Override
+        public void reset() {
+            if (gzipStream != null) throw new IllegalStateException("Compressed body already started");
+            super.reset();
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (gzipStream != null) throw new IllegalStateException("Compressed body already started");
+            super.resetBuffer();
+        }
+
+        private boolean decide() {
+            if (compressing == null) {
+                int status = response.getStatus();
+                compressing = status != HttpServletResponse.SC_NO_CONTENT
+                    && status != HttpServletResponse.SC_NOT_MODIFIED
+                    && !response.containsHeader("Content-Encoding")
+                    && isCompressible(response.getContentType())
+                    && (contentLength < 0 || contentLength >= MIN_COMPRESS_SIZE);
+
+                if (compressing) {
+                    response.setHeader("Content-Encoding", "gzip");
+                    String etag = response.getHeader("ETag");
+                    if (etag != null) response.setHeader("ETag", HttpCacheUtil.gzipETag(etag));
+                } else if (contentLength >= 0) {
+                    response.setContentLengthLong(contentLength);
+                }
+            }
+            return compressing;
+        }
+
+        /**
+         * Write the gzip trailer, or release a held-back length if no body was written
+         */
+        void finish() throws IOException {
+            if (writer != null) writer.flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+            } else if (compressing == null && contentLength >= 0) {
+                response.setContentLengthLong(contentLength);
+            }
+        }
+    }
+
+    private static class GzipOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private final GZIPOutputStream gzip;
+        private boolean finished;
+
+        GzipOutputStream(ServletOutputStream out) throws IOException {
+            this.out = out;
+            this.gzip = new GZIPOutputStream(out, 8192);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            gzip.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            gzip.write(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            gzip.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish();
+        }
+
+        void finish() throws IOException {
+            if (finished) return;
+            finished = true;
+            gzip.finish();
+            out.flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener listener) {
+            out.setWriteListener(listener);
+        }
+    }
+}
@@ -1,18 +1,53 @@
 package com.mybible.util;
 
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 
 /**
- * HashUtil - Utility for password hashing using SHA-256
+ * HashUtil - Utility for hashing, and salted PBKDF2 password hashing
+ *
+ * Passwords are stored as "pbkdf2-sha256$<iterations>$<salt>$<hash>" (base64url,
+ * 16-byte random salt per password). Hashes from before this format are plain
+ * SHA-256 hex; they still verify, and needsRehash() reports them (and PBKDF2
+ * hashes below the current iteration count) so login can upgrade them.
+ * Iterations are tuned to the host with calibrate() at startup.
+ *
+ * PBKDF2 is deliberately slow - call the password methods through
+ * PasswordHasher so they run off the request threads.
  *
  * Usage:
  *   HashUtil.hash("password123")  -> returns SHA-256 hash
  *   HashUtil.verify("password123", storedHash) -> returns boolean
+ *   HashUtil.calibrate(200);  // iterations for ~200ms per hash
+ *   String stored = HashUtil.hashPassword("password123");
+ *   if (HashUtil.verifyPassword("password123", stored) && HashUtil.needsRehash(stored)) ...
  */
 public class HashUtil {
 
+    private static final String PBKDF2_ID = "pbkdf2-sha256";
+    private static final String PBKDF2_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+
+    // OWASP recommendation for PBKDF2-HMAC-SHA256; calibrate() never goes below MIN
+    private static final int DEFAULT_ITERATIONS = 600000;
+    private static final int MIN_ITERATIONS = 100000;
+    private static final int MAX_ITERATIONS = 10000000;
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+    private static final Base64.Encoder B64 = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder B64_DECODER = Base64.getUrlDecoder();
+
+    private static volatile int iterations = DEFAULT_ITERATIONS;
+    private static volatile String dummyHash;
+    private static volatile long estimatedHashMs = 250;  // until calibrate() measures it
+
     /**
      * Hash a string using SHA-256
      *
@@ -61,23 +96,127 @@ public class HashUtil {
     }
 
     /**
-     * Hash a password (alias for hash method)
+     * Hash a password with PBKDF2 and a new random salt
      *
      * @param password The password to hash
-     * @return The SHA-256 hash as a hex string
+     * @return The versioned hash string
+     * @throws IllegalArgumentException if password is null or empty
      */
     public static String hashPassword(String password) {
-        return hash(password);
+        if (password == null || password.isEmpty()) {
+            throw new IllegalArgumentException("Input cannot be null or empty");
+        }
+        int cost = iterations;
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        return PBKDF2_ID + "$" + cost + "$" + B64.encodeToString(salt) + "$" +
+            B64.encodeToString(pbkdf2(password, salt, cost));
     }
 
     /**
-     * Verify password matches stored hash
+     * Verify password matches stored hash (PBKDF2 or legacy SHA-256)
      *
      * @param password The password to verify
      * @param storedHash The stored hash to compare against
-     * @return true if the password hash matches the stored hash
+     * @return true if the password matches the stored hash
      */
     public static boolean verifyPassword(String password, String storedHash) {
-        return verify(password, storedHash);
+        if (password == null || password.isEmpty() || storedHash == null) {
+            return false;
+        }
+        if (!storedHash.startsWith(PBKDF2_ID + "$")) {
+            return MessageDigest.isEqual(hash(password).getBytes(StandardCharsets.US_ASCII),
+                storedHash.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 4) return false;
+        try {
+            int cost = Integer.parseInt(parts[1]);
+            if (cost < 1 || cost > MAX_ITERATIONS) return false;
+            byte[] expected = B64_DECODER.decode(parts[3]);
+            return MessageDigest.isEqual(pbkdf2(password, B64_DECODER.decode(parts[2]), cost), expected);
+        } catch (IllegalArgumentException e) {
+            return false;  // malformed number or base64
+        }
+    }
+
+    /**
+     * @return true if the stored hash is legacy SHA-256 or uses fewer iterations than now configured
+     */
+    public static boolean needsRehash(String storedHash) {
+        if (storedHash == null || !storedHash.startsWith(PBKDF2_ID + "$")) {
+            return true;
+        }
+        int end = storedHash.indexOf('$', PBKDF2_ID.length() + 1);
+        try {
+            return end < 0 || Integer.parseInt(storedHash.substring(PBKDF2_ID.length() + 1, end)) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // ========================================================================
+    // Cost
+    // ========================================================================
+
+    /**
+     * Set iterations so one hash takes about targetMs on this host
+     *
+     * @return the iteration count now in use
+     */
+    public static int calibrate(long targetMs) {
+        int sample = 20000;
+        byte[] salt = new byte[SALT_BYTES];
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {  // first rounds warm up the JIT
+            long start = System.nanoTime();
+            pbkdf2("calibration", salt, sample);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        long target = targetMs * 1000000L * sample / Math.max(1, best);
+        iterations = (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, target));
+        estimatedHashMs = Math.max(targetMs, best * iterations / sample / 1000000);
+        System.out.println("[HashUtil] PBKDF2 calibrated to " + iterations + " iterations (~" +
+            estimatedHashMs + "ms per hash, target " + targetMs + "ms)");
+        getDummyHash();
+        return iterations;
+    }
+
+    /**
+     * Hash of a random password at the current cost. Verifying against it takes
+     * as long as a real check, for logins whose account does not exist.
+     */
+    public static String getDummyHash() {
+        String dummy = dummyHash;
+        if (dummy == null || needsRehash(dummy)) {
+            byte[] password = new byte[SALT_BYTES];
+            RANDOM.nextBytes(password);
+            dummy = hashPassword(B64.encodeToString(password));
+            dummyHash = dummy;
+        }
+        return dummy;
+    }
+
+    public static int getIterations() {
+        return iterations;
+    }
+
+    /**
+     * @return expected time of one password hash at the current cost (at least the calibration target)
+     */
+    public static long getEstimatedHashMs() {
+        return estimatedHashMs;
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int cost) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, cost, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance(PBKDF2_ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(PBKDF2_ALGORITHM + " algorithm not available", e);
+        } finally {
+            spec.clearPassword();
+        }
     }
 }
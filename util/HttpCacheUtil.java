@@ -0,0 +1,129 @@
+package com.mybible.util;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * HttpCacheUtil - Conditional GET support (ETag / Last-Modified / 304)
+ *
+ * Bible content only changes when a translation file changes, so responses are
+ * tagged with a strong ETag derived from BibleService content hashes. Browsers
+ * and CDNs then revalidate with If-None-Match and get an empty 304 back.
+ * Translations can be hot-reloaded at any time, so max-ages stay short and
+ * responses are marked must-revalidate; the cheap 304 is what saves the work.
+ *
+ * Usage:
+ *   String etag = HttpCacheUtil.strongETag(bibleService.getContentHash(code));
+ *   if (HttpCacheUtil.checkNotModified(request, response, etag, lastModified, maxAge)) {
+ *       return;  // 304 already sent
+ *   }
+ *   ...write the body
+ */
+public class HttpCacheUtil {
+
+    /** One minute - for chapter/book content, which changes when a translation is hot-reloaded */
+    public static final int CONTENT_MAX_AGE = 60;
+
+    /** Five minutes - for listings that change when translations are added or removed */
+    public static final int SHORT_MAX_AGE = 300;
+
+    /**
+     * Appended inside the quotes of a strong ETag when the body is gzip-encoded,
+     * since each content-coding is a different representation
+     */
+    public static final String GZIP_ETAG_SUFFIX = "--gzip";
+
+    private HttpCacheUtil() {}
+
+    /**
+     * Quote a content hash as a strong entity tag
+     *
+     * @return the ETag header value, or null if hash is null
+     */
+    public static String strongETag(String hash) {
+        return hash != null ? "\"" + hash + "\"" : null;
+    }
+
+    /**
+     * The ETag for the gzip-encoded variant of a representation
+     */
+    public static String gzipETag(String etag) {
+        if (etag == null || !etag.endsWith("\"") || etag.endsWith(GZIP_ETAG_SUFFIX + "\"")) return etag;
+        return etag.substring(0, etag.length() - 1) + GZIP_ETAG_SUFFIX + "\"";
+    }
+
+    /**
+     * Send validators and caching headers, and answer 304 if the client's copy
+     * is current. If-None-Match takes precedence over If-Modified-Since.
+     *
+     * @param etag strong ETag for the representation (from strongETag)
+     * @param lastModified epoch millis, or 0 if unknown
+     * @param maxAgeSeconds Cache-Control max-age
+     * @return true if a 304 was sent and the caller should not write a body
+     */
+    public static boolean checkNotModified(HttpServletRequest request, HttpServletResponse response,
+                                           String etag, long lastModified, int maxAgeSeconds) {
+        if (etag == null) return false;
+
+        response.setHeader("ETag", etag);
+        response.setHeader("Cache-Control", "public, max-age=" + maxAgeSeconds + ", must-revalidate");
+        if (lastModified > 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if (matches(ifNoneMatch, etag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+            return false;
+        }
+
+        if (lastModified > 0) {
+            long ifModifiedSince;
+            try {
+                ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            // HTTP dates have one-second resolution
+            if (ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Weak comparison of an If-None-Match list against our tag (RFC 9110 13.1.2).
+     * Encoded variants of the same tag match too - the decoded content is identical.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        String opaque = opaqueTag(etag);
+        int i = 0;
+        int n = ifNoneMatch.length();
+        while (i < n) {
+            while (i < n && (ifNoneMatch.charAt(i) == ' ' || ifNoneMatch.charAt(i) == ',')) i++;
+            if (i >= n) break;
+
+            int end = ifNoneMatch.indexOf(',', i);
+            if (end < 0) end = n;
+            String candidate = ifNoneMatch.substring(i, end).trim();
+            if (candidate.equals("*") || opaqueTag(candidate).equals(opaque)) {
+                return true;
+            }
+            i = end + 1;
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        if (tag.startsWith("W/")) tag = tag.substring(2);
+        if (tag.endsWith(GZIP_ETAG_SUFFIX + "\"")) {
+            tag = tag.substring(0, tag.length() - GZIP_ETAG_SUFFIX.length() - 1) + "\"";
+        }
+        return tag;
+    }
+}
@@ -1,13 +1,15 @@
 package com.mybible.util;
 
 import java.util.*;
-import java.time.Instant;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.security.Signature;
+import java.util.concurrent.ConcurrentHashMap;
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.util.Base64;
-import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 
 /**
  * JWTUtil - Utility class for JWT token operations
@@ -15,16 +17,103 @@ import java.util.regex.Matcher;
  * This is a simplified JWT implementation for demonstration.
  * For production, consider using nimbus-jose-jwt or auth0 java-jwt.
  *
+ * verify() runs on every authenticated request, so the key is loaded once,
+ * each thread reuses its own initialized Mac, and tokens that have already
+ * been verified are answered from a bounded cache until they expire.
+ *
+ * Signs with HS256 and the shared JWT_SECRET by default. After useKeySet(),
+ * tokens are signed ES256/EdDSA with a "kid" header and verified with the
+ * matching public key from the JwtKeySet. HS256 tokens (no kid) issued before
+ * the first switch (JwtKeySet.getSince()) are accepted for one maximum token
+ * lifetime after it, and never when JWT_SECRET is the built-in default.
+ *
+ * Access tokens are short-lived; a long-lived refresh token (claim
+ * "use":"refresh") obtains a new pair and is rotated on every use. Every
+ * token carries a "jti" id so it can be revoked through TokenRevocationList.
+ *
  * Usage:
- *   String token = JWTUtil.generate(userId, email, role);
- *   JWTUtil.JWTPayload payload = JWTUtil.verify(token);
+ *   JWTUtil.TokenPair tokens = JWTUtil.generateTokenPair(userId, email, role);
+ *   JWTUtil.JWTPayload payload = JWTUtil.verify(tokens.accessToken);
+ *   JWTUtil.TokenPair renewed = JWTUtil.refresh(tokens.refreshToken);
  */
 public class JWTUtil {
 
-    private static final long EXPIRATION_MS = 86400000L; // 24 hours
+    private static volatile long accessExpirationMs = 15 * 60000L;        // 15 minutes
+    private static volatile long refreshExpirationMs = 30 * 86400000L;    // 30 days
+    private static final long LEGACY_EXPIRATION_MS = 86400000L;           // tokens issued before refresh support
+    private static final int MAX_CACHED_TOKENS = 10000;
+
+    // Token ids back revocation and refresh rotation, so they must not be guessable
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Legacy-form signatures come only from releases before the signature fix (shipped 2026-10-16);
+    // their 24h tokens all expire by this fixed instant, 2026-10-18T00:00:00Z
+    private static final long LEGACY_SIGNATURE_CUTOFF_MS = 1792281600000L;
+
+    // A refresh token presented again within this window (parallel page loads) gets the same new pair
+    private static final long ROTATION_GRACE_MS = 30000;
+    private static final Map<String, RecentRotation> RECENT_ROTATIONS = new HashMap<>();
+
+    private static final boolean DEFAULT_SECRET =
+        System.getenv("JWT_SECRET") == null || System.getenv("JWT_SECRET").isEmpty();
+
+    private static final SecretKeySpec SECRET_KEY =
+        new SecretKeySpec(getSecret().getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+
+    // Mac is not thread-safe; one initialized instance per thread avoids getInstance()/init() per call
+    private static final ThreadLocal<Mac> MAC = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(SECRET_KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    });
+
+    private static final String ENCODED_HEADER =
+        base64UrlEncode("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8));
+
+    // Asymmetric signing keys; null to sign with HS256
+    private static volatile JwtKeySet keySet;
+    private static volatile long keySetSince;  // keySet.getSince(): first switch-over, fixed across restarts (epoch ms)
+
+    // Signature is not thread-safe either; one instance per thread and JCA algorithm
+    private static final ThreadLocal<Map<String, Signature>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+
+    // Verified token -> payload; entries are dropped once the token expires
+    private static final ConcurrentHashMap<String, VerifiedToken> VERIFIED = new ConcurrentHashMap<>();
+
+    private static class VerifiedToken {
+        final String userId;
+        final String email;
+        final String role;
+        final String jti;
+        final long exp;
+        final boolean refresh;
+
+        VerifiedToken(String userId, String email, String role, String jti, long exp, boolean refresh) {
+            this.userId = userId;
+            this.email = email;
+            this.role = role;
+            this.jti = jti;
+            this.exp = exp;
+            this.refresh = refresh;
+        }
+    }
+
+    private static class RecentRotation {
+        final TokenPair tokens;
+        final long rotatedAt;
+
+        RecentRotation(TokenPair tokens, long rotatedAt) {
+            this.tokens = tokens;
+            this.rotatedAt = rotatedAt;
+        }
+    }
 
     /**
-     * Get the JWT secret from environment or use default
+     * Get the JWT secret from environment or use default (read once, at class load)
      */
     private static String getSecret() {
         String secret = System.getenv("JWT_SECRET");
@@ -36,7 +125,44 @@ public class JWTUtil {
     }
 
     /**
-     * Generate JWT token
+     * Sign new tokens with the keyset's current key (ES256/EdDSA) instead of HS256.
+     * The HS256 window is measured from when the keyset directory was first
+     * opened, not from this call, so restarts do not reopen it.
+     */
+    public static void useKeySet(JwtKeySet keys) {
+        keySetSince = keys.getSince();
+        keySet = keys;
+    }
+
+    public static JwtKeySet getKeySet() {
+        return keySet;
+    }
+
+    /**
+     * Set token lifetimes (call before issuing tokens or opening a JwtKeySet)
+     */
+    public static void configureLifetimes(long accessMs, long refreshMs) {
+        accessExpirationMs = accessMs;
+        refreshExpirationMs = refreshMs;
+    }
+
+    public static long getAccessExpirationMs() {
+        return accessExpirationMs;
+    }
+
+    public static long getRefreshExpirationMs() {
+        return refreshExpirationMs;
+    }
+
+    /**
+     * Longest time any token signed now can stay valid - how long a retired signing key must be kept
+     */
+    public static long getMaxTokenLifetimeMs() {
+        return Math.max(Math.max(accessExpirationMs, refreshExpirationMs), LEGACY_EXPIRATION_MS);
+    }
+
+    /**
+     * Generate access token
      *
      * @param userId The user ID to encode
      * @param email The email to encode
@@ -44,79 +170,286 @@ public class JWTUtil {
      * @return The generated JWT token string
      */
     public static String generate(String userId, String email, String role) {
-        String secret = getSecret();
+        return generate(userId, email, role, false);
+    }
+
+    /**
+     * Generate an access token and a refresh token for a login
+     */
+    public static TokenPair generateTokenPair(String userId, String email, String role) {
+        return new TokenPair(generate(userId, email, role, false), generate(userId, email, role, true),
+            accessExpirationMs / 1000);
+    }
 
+    private static String generate(String userId, String email, String role, boolean refresh) {
         long nowMillis = System.currentTimeMillis();
-        long expMillis = nowMillis + EXPIRATION_MS;
+        long expMillis = nowMillis + (refresh ? refreshExpirationMs : accessExpirationMs);
 
         // Build payload
-        String header = "{\"alg\":\"HS256\",\"typ\":\"JWT\"}";
         String payload = String.format(
-            "{\"sub\":\"%s\",\"email\":\"%s\",\"role\":\"%s\",\"iat\":%d,\"exp\":%d}",
-            userId, escapeJson(email), role, nowMillis / 1000, expMillis / 1000
+            "{\"sub\":\"%s\",\"email\":\"%s\",\"role\":\"%s\",\"jti\":\"%s\",%s\"iat\":%d,\"exp\":%d}",
+            userId, escapeJson(email), role, newTokenId(), refresh ? "\"use\":\"refresh\"," : "",
+            nowMillis / 1000, expMillis / 1000
         );
 
         // Encode
-        String encodedHeader = base64UrlEncode(header.getBytes());
-        String encodedPayload = base64UrlEncode(payload.getBytes());
-        String data = encodedHeader + "." + encodedPayload;
+        String encodedPayload = base64UrlEncode(payload.getBytes(StandardCharsets.UTF_8));
+
+        JwtKeySet keys = keySet;
+        if (keys != null) {
+            JwtKeySet.Key key = keys.getSigningKey();
+            String header = "{\"alg\":\"" + key.alg + "\",\"typ\":\"JWT\",\"kid\":\"" + key.kid + "\"}";
+            String data = base64UrlEncode(header.getBytes(StandardCharsets.UTF_8)) + "." + encodedPayload;
+            return data + "." + base64UrlEncode(sign(key, data));
+        }
 
-        // Sign
-        String signature = hmacSha256(data, secret);
-        String encodedSignature = base64UrlEncode(signature.getBytes());
+        // Sign (standard base64url of the raw HMAC)
+        String data = ENCODED_HEADER + "." + encodedPayload;
+        return data + "." + base64UrlEncode(hmacSha256(data));
+    }
 
-        return data + "." + encodedSignature;
+    private static String newTokenId() {
+        byte[] id = new byte[16];
+        RANDOM.nextBytes(id);
+        return base64UrlEncode(id);
     }
 
     /**
-     * Verify and decode JWT token
+     * Verify and decode an access token
      *
      * @param token The JWT token to verify
      * @return The decoded JWTPayload
      * @throws IllegalArgumentException if token is null, empty, or malformed
-     * @throws SecurityException if signature is invalid or token is expired
+     * @throws SecurityException if signature is invalid, token is expired or revoked, or it is a refresh token
      */
     public static JWTPayload verify(String token) {
+        VerifiedToken verified = verifyToken(token);
+        if (verified.refresh) {
+            throw new SecurityException("Refresh token cannot be used for access");
+        }
+        if (TokenRevocationList.getInstance().isRevoked(verified.jti)) {
+            throw new SecurityException("Token revoked");
+        }
+        return toPayload(verified);
+    }
+
+    /**
+     * Exchange a refresh token for a new access/refresh pair. The old refresh
+     * token is revoked; presenting it again within ROTATION_GRACE_MS (parallel
+     * requests racing on the same cookie) returns the same new pair.
+     *
+     * @throws SecurityException if the token is invalid, expired, revoked, or not a refresh token
+     */
+    public static synchronized TokenPair refresh(String refreshToken) {
+        VerifiedToken verified = verifyToken(refreshToken);
+        if (!verified.refresh) {
+            throw new SecurityException("Not a refresh token");
+        }
+
+        long now = System.currentTimeMillis();
+        RECENT_ROTATIONS.values().removeIf(r -> now - r.rotatedAt > ROTATION_GRACE_MS);
+        RecentRotation recent = RECENT_ROTATIONS.get(verified.jti);
+        if (recent != null) {
+            return recent.tokens;
+        }
+
+        TokenRevocationList revocations = TokenRevocationList.getInstance();
+        if (revocations.isRevoked(verified.jti)) {
+            throw new SecurityException("Refresh token revoked");
+        }
+        revocations.revoke(verified.jti, verified.exp);
+
+        TokenPair tokens = generateTokenPair(verified.userId, verified.email, verified.role);
+        if (verified.jti != null) {
+            RECENT_ROTATIONS.put(verified.jti, new RecentRotation(tokens, now));
+        }
+        return tokens;
+    }
+
+    /**
+     * Revoke an access or refresh token until it expires. Invalid or expired
+     * tokens need no revocation and are ignored.
+     *
+     * @return true if the token was revoked
+     */
+    public static boolean revoke(String token) {
+        try {
+            VerifiedToken verified = verifyToken(token);
+            if (verified.jti == null) return false;
+            TokenRevocationList.getInstance().revoke(verified.jti, verified.exp);
+            VERIFIED.remove(token);
+            return true;
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static VerifiedToken verifyToken(String token) {
         if (token == null || token.isEmpty()) {
             throw new IllegalArgumentException("Token cannot be null or empty");
         }
 
-        String[] parts = token.split("\\.");
-        if (parts.length != 3) {
-            throw new IllegalArgumentException("Invalid JWT format");
+        long now = System.currentTimeMillis() / 1000;
+        VerifiedToken cached = VERIFIED.get(token);
+        if (cached != null) {
+            if (now > cached.exp) {
+                VERIFIED.remove(token);
+                throw new SecurityException("Token expired");
+            }
+            return cached;
         }
 
-        String header = parts[0];
-        String payload = parts[1];
-        String signature = parts[2];
-
-        // Verify signature
-        String secret = getSecret();
-        String data = header + "." + payload;
-        String expectedSignature = base64UrlEncode(hmacSha256(data, secret).getBytes());
+        int firstDot = token.indexOf('.');
+        int secondDot = firstDot < 0 ? -1 : token.indexOf('.', firstDot + 1);
+        if (firstDot <= 0 || secondDot < 0 || token.indexOf('.', secondDot + 1) >= 0) {
+            throw new IllegalArgumentException("Invalid JWT format");
+        }
 
-        if (!signature.equals(expectedSignature)) {
-            throw new SecurityException("Invalid token signature");
+        // Verify signature - with the kid's public key, or the HS256 secret if there is no kid
+        String kid = extractJsonValue(decodeSegment(token, 0, firstDot), "kid");
+        JwtKeySet keys = keySet;
+        boolean legacySignature = false;
+        if (kid != null) {
+            JwtKeySet.Key key = keys != null ? keys.getKey(kid) : null;
+            if (key == null) {
+                throw new SecurityException("Unknown signing key");
+            }
+            if (!verifySignature(key, token.substring(0, secondDot), token.substring(secondDot + 1))) {
+                throw new SecurityException("Invalid token signature");
+            }
+        } else {
+            if (keys != null && (DEFAULT_SECRET || now * 1000 > keySetSince + getMaxTokenLifetimeMs())) {
+                // Anyone can sign with the public default secret; and past the window no HS256 token is still valid
+                throw new SecurityException("HS256 tokens are no longer accepted");
+            }
+            byte[] expected = hmacSha256(token.substring(0, secondDot));
+            String signature = token.substring(secondDot + 1);
+            if (!signatureMatches(signature, expected)) {
+                legacySignature = legacySignatureMatches(signature, expected);
+                if (!legacySignature) {
+                    throw new SecurityException("Invalid token signature");
+                }
+            }
         }
 
         // Decode payload
-        String decodedPayload = new String(base64UrlDecode(payload));
+        String decodedPayload = decodeSegment(token, firstDot + 1, secondDot);
 
         // Parse payload
-        JWTPayload jwtPayload = new JWTPayload();
-        jwtPayload.userId = extractJsonValue(decodedPayload, "sub");
-        jwtPayload.email = extractJsonValue(decodedPayload, "email");
-        jwtPayload.role = extractJsonValue(decodedPayload, "role");
-
         String expStr = extractJsonValue(decodedPayload, "exp");
+        if (expStr == null) {
+            throw new IllegalArgumentException("Token has no expiration");
+        }
         long exp = Long.parseLong(expStr);
-        long now = System.currentTimeMillis() / 1000;
 
         if (now > exp) {
             throw new SecurityException("Token expired");
         }
+        String jti = extractJsonValue(decodedPayload, "jti");
+        if (legacySignature && (jti != null || exp * 1000 > LEGACY_SIGNATURE_CUTOFF_MS)) {
+            // Only tokens from before the signature fix (no jti, 24h lifetime) carry the legacy form
+            throw new SecurityException("Invalid token signature");
+        }
+        if (kid == null && keys != null) {
+            String iat = extractJsonValue(decodedPayload, "iat");
+            if (iat == null || Long.parseLong(iat) >= keySetSince / 1000) {
+                throw new SecurityException("HS256 token issued after switching signing keys");
+            }
+        }
+
+        VerifiedToken verified = new VerifiedToken(
+            extractJsonValue(decodedPayload, "sub"),
+            extractJsonValue(decodedPayload, "email"),
+            extractJsonValue(decodedPayload, "role"),
+            jti,
+            exp,
+            "refresh".equals(extractJsonValue(decodedPayload, "use")));
+        cacheVerified(token, verified, now);
+        return verified;
+    }
 
-        return jwtPayload;
+    /**
+     * Constant-time comparison against the standard base64url signature
+     */
+    private static boolean signatureMatches(String signature, byte[] expected) {
+        try {
+            return MessageDigest.isEqual(base64UrlDecode(signature), expected);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * The legacy form (base64url of the HMAC passed through a String) that
+     * tokens issued before the signature fix carry. Lossy and charset-dependent,
+     * so verifyToken only honours it for tokens expiring by LEGACY_SIGNATURE_CUTOFF_MS.
+     */
+    private static boolean legacySignatureMatches(String signature, byte[] expected) {
+        try {
+            return MessageDigest.isEqual(base64UrlDecode(signature), new String(expected).getBytes());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static String decodeSegment(String token, int start, int end) {
+        try {
+            return new String(base64UrlDecode(token.substring(start, end)), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid JWT format");
+        }
+    }
+
+    private static byte[] sign(JwtKeySet.Key key, String data) {
+        try {
+            Signature signature = signatureFor(key);
+            signature.initSign(key.privateKey);
+            signature.update(data.getBytes(StandardCharsets.US_ASCII));
+            return signature.sign();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Error signing token", e);
+        }
+    }
+
+    private static boolean verifySignature(JwtKeySet.Key key, String data, String encodedSignature) {
+        try {
+            Signature signature = signatureFor(key);
+            signature.initVerify(key.publicKey);
+            signature.update(data.getBytes(StandardCharsets.US_ASCII));
+            return signature.verify(base64UrlDecode(encodedSignature));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static Signature signatureFor(JwtKeySet.Key key) throws GeneralSecurityException {
+        Map<String, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(key.signatureAlgorithm());
+        if (signature == null) {
+            signature = Signature.getInstance(key.signatureAlgorithm());
+            signatures.put(key.signatureAlgorithm(), signature);
+        }
+        return signature;
+    }
+
+    private static void cacheVerified(String token, VerifiedToken verified, long now) {
+        if (VERIFIED.size() >= MAX_CACHED_TOKENS) {
+            VERIFIED.values().removeIf(v -> now > v.exp);
+            if (VERIFIED.size() >= MAX_CACHED_TOKENS) {
+                VERIFIED.clear();
+            }
+        }
+        VERIFIED.put(token, verified);
+    }
+
+    private static JWTPayload toPayload(VerifiedToken verified) {
+        JWTPayload payload = new JWTPayload();
+        payload.userId = verified.userId;
+        payload.email = verified.email;
+        payload.role = verified.role;
+        payload.jti = verified.jti;
+        payload.expiresAt = verified.exp;
+        return payload;
     }
 
     /**
@@ -134,18 +467,10 @@ public class JWTUtil {
     }
 
     /**
-     * HMAC SHA-256 signature
+     * HMAC SHA-256 signature of an ASCII string (the encoded header and payload)
      */
-    private static String hmacSha256(String data, String secret) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            SecretKeySpec secretKey = new SecretKeySpec(secret.getBytes(), "HmacSHA256");
-            mac.init(secretKey);
-            byte[] hash = mac.doFinal(data.getBytes());
-            return new String(hash);
-        } catch (Exception e) {
-            throw new RuntimeException("Error generating HMAC", e);
-        }
+    private static byte[] hmacSha256(String data) {
+        return MAC.get().doFinal(data.getBytes(StandardCharsets.US_ASCII));
     }
 
     /**
@@ -153,24 +478,30 @@ public class JWTUtil {
      */
     private static String extractJsonValue(String json, String key) {
         // Simple extraction: "key":"value" or "key":number
-        String pattern = "\"" + key + "\":\"([^\"]+)\"";
-        Pattern p = Pattern.compile(pattern);
-        Matcher m = p.matcher(json);
+        String marker = "\"" + key + "\":";
+        int start = json.indexOf(marker);
+        if (start < 0) return null;
+        int i = start + marker.length();
 
-        if (m.find()) {
-            return m.group(1);
+        if (i < json.length() && json.charAt(i) == '"') {
+            StringBuilder value = new StringBuilder();
+            for (i++; i < json.length(); i++) {
+                char c = json.charAt(i);
+                if (c == '"') return value.toString();
+                if (c == '\\' && i + 1 < json.length()) {
+                    char next = json.charAt(++i);
+                    value.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next == 't' ? '\t' : next);
+                } else {
+                    value.append(c);
+                }
+            }
+            return null;
         }
 
         // Try numeric value
-        pattern = "\"" + key + "\":([0-9]+)";
-        p = Pattern.compile(pattern);
-        m = p.matcher(json);
-
-        if (m.find()) {
-            return m.group(1);
-        }
-
-        return null;
+        int end = i;
+        while (end < json.length() && Character.isDigit(json.charAt(end))) end++;
+        return end > i ? json.substring(i, end) : null;
     }
 
     /**
@@ -192,6 +523,8 @@ public class JWTUtil {
         public String userId;
         public String email;
         public String role;
+        public String jti;       // null for tokens issued before revocation support
+        public long expiresAt;   // epoch seconds
 
         @Override
         public String toString() {
@@ -199,4 +532,19 @@ public class JWTUtil {
                 userId, email, role);
         }
     }
+
+    /**
+     * Tokens issued at login or refresh
+     */
+    public static class TokenPair {
+        public final String accessToken;
+        public final String refreshToken;
+        public final long expiresInSeconds;  // access token lifetime
+
+        public TokenPair(String accessToken, String refreshToken, long expiresInSeconds) {
+            this.accessToken = accessToken;
+            this.refreshToken = refreshToken;
+            this.expiresInSeconds = expiresInSeconds;
+        }
+    }
 }
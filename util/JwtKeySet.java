@@ -0,0 +1,410 @@
+package com.mybible.util;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.*;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JwtKeySet - Asymmetric JWT signing keys with rotation
+ *
+ * Holds every key that may still have live tokens, indexed by key id ("kid")
+ * for verification, and signs with the newest active key that has a private half.
+ * Keys are stored one file per kid in a directory; nodes that share the
+ * directory share the keyset, so any node can verify tokens another node
+ * issued and no shared secret is needed. Services outside the cluster can
+ * verify against the JWKS document instead (toJwks()).
+ *
+ * A background task re-reads the directory, generates the next signing key
+ * when the current one nears the rotation interval, and deletes keys once no
+ * token signed with them can still be valid. A new key is written with an
+ * activation time ACTIVATION_DELAY_MS ahead, so every node has loaded it
+ * before any node signs with it. Only the node holding the directory's lock
+ * file generates keys; the others pick the new key up from disk.
+ *
+ * The first open of a directory records the switch-over time in a marker file
+ * (getSince()), so it stays fixed across restarts and is the same on every node.
+ *
+ * Supported algorithms: ES256 (ECDSA P-256) and EdDSA (Ed25519).
+ *
+ * Key file (<kid>.jwk, java.util.Properties):
+ *   alg, created, activates (epoch millis), public (base64 X.509), private (base64 PKCS#8, optional)
+ *
+ * Usage:
+ *   JwtKeySet keys = JwtKeySet.open(Paths.get("/opt/jac/data/jwt-keys"), "ES256", rotationMs, tokenLifetimeMs);
+ *   keys.startRotation();
+ *   JWTUtil.useKeySet(keys);
+ */
+public class JwtKeySet {
+
+    private static final String FILE_SUFFIX = ".jwk";
+    private static final long CHECK_INTERVAL_MINUTES = 5;
+    private static final long UNKNOWN_KID_RELOAD_MS = 60000;  // limits reloads caused by unknown kids
+    // Two maintenance checks, so every node has reloaded a new key before it signs anything
+    private static final long ACTIVATION_DELAY_MS = 2 * CHECK_INTERVAL_MINUTES * 60000;
+    private static final String LOCK_FILE = ".rotation.lock";
+    private static final String SINCE_FILE = ".keyset-since";
+
+    private final Path directory;
+    private final String algorithm;
+    private final long rotationMs;
+    private final long retentionMs;
+
+    // kid -> key; replaced wholesale so readers never need a lock
+    private volatile Map<String, Key> keys = Collections.emptyMap();
+    private volatile Key signingKey;
+    private volatile Key nextKey;  // published but not yet active, or null
+    private volatile long lastReload;
+    private long since;  // when this directory started signing (epoch ms), from SINCE_FILE
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * One verification key, plus its private half if this node may sign with it
+     */
+    public static class Key {
+        public final String kid;
+        public final String alg;
+        public final long created;
+        public final long activates;  // signing starts here; verification as soon as it is loaded
+        public final PublicKey publicKey;
+        final PrivateKey privateKey;
+
+        Key(String kid, String alg, long created, long activates, PublicKey publicKey, PrivateKey privateKey) {
+            this.kid = kid;
+            this.alg = alg;
+            this.created = created;
+            this.activates = activates;
+            this.publicKey = publicKey;
+            this.privateKey = privateKey;
+        }
+
+        /** JCA algorithm producing the JWS signature encoding (raw r||s for ES256) */
+        String signatureAlgorithm() {
+            return "ES256".equals(alg) ? "SHA256withECDSAinP1363Format" : "Ed25519";
+        }
+    }
+
+    private JwtKeySet(Path directory, String algorithm, long rotationMs, long retentionMs) {
+        this.directory = directory;
+        this.algorithm = algorithm;
+        this.rotationMs = rotationMs;
+        this.retentionMs = retentionMs;
+    }
+
+    /**
+     * Load the keyset from a directory, creating a first signing key if needed
+     *
+     * @param algorithm "ES256" or "EdDSA", used for newly generated keys
+     * @param rotationMs how long each key signs before the next one takes over
+     * @param tokenLifetimeMs how long tokens live, so retired keys are kept until their tokens expire
+     */
+    public static JwtKeySet open(Path directory, String algorithm, long rotationMs, long tokenLifetimeMs)
+            throws IOException, GeneralSecurityException {
+        if (!"ES256".equals(algorithm) && !"EdDSA".equals(algorithm)) {
+            throw new IllegalArgumentException("Unsupported JWT algorithm: " + algorithm);
+        }
+        Files.createDirectories(directory);
+        JwtKeySet keySet = new JwtKeySet(directory, algorithm, rotationMs, rotationMs + tokenLifetimeMs);
+        keySet.reload();
+        keySet.since = keySet.readSince();
+        keySet.rotateIfDue();
+        System.out.println("[JwtKeySet] " + keySet.keys.size() + " keys loaded from " + directory +
+            ", signing with " + keySet.signingKey.kid + " (" + keySet.signingKey.alg + ")");
+        return keySet;
+    }
+
+    public void startRotation() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jwt-key-rotation");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+                rotateIfDue();
+                purgeRetired();
+            } catch (Exception e) {
+                System.err.println("[JwtKeySet] Key maintenance failed: " + e.getMessage());
+            }
+        }, CHECK_INTERVAL_MINUTES, CHECK_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public void stop() {
+        if (scheduler != null) scheduler.shutdownNow();
+    }
+
+    // ========================================================================
+    // Lookup
+    // ========================================================================
+
+    public Key getSigningKey() {
+        Key next = nextKey;
+        if (next != null && System.currentTimeMillis() >= next.activates) {
+            signingKey = next;
+            nextKey = null;
+        }
+        return signingKey;
+    }
+
+    /**
+     * @return the verification key for a kid, or null if unknown. An unknown
+     *         kid triggers a (rate-limited) re-read in case another node just rotated.
+     */
+    public Key getKey(String kid) {
+        Key key = keys.get(kid);
+        if (key == null && System.currentTimeMillis() - lastReload > UNKNOWN_KID_RELOAD_MS) {
+            try {
+                reload();
+            } catch (IOException e) {
+                System.err.println("[JwtKeySet] Reload failed: " + e.getMessage());
+            }
+            key = keys.get(kid);
+        }
+        return key;
+    }
+
+    public Collection<Key> getKeys() {
+        return keys.values();
+    }
+
+    /**
+     * When this keyset first started signing tokens (epoch ms); fixed once recorded
+     */
+    public long getSince() {
+        return since;
+    }
+
+    // ========================================================================
+    // Storage
+    // ========================================================================
+
+    synchronized void reload() throws IOException {
+        lastReload = System.currentTimeMillis();
+        Map<String, Key> loaded = new HashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    Key key = readKey(file);
+                    loaded.put(key.kid, key);
+                } catch (IOException | GeneralSecurityException | RuntimeException e) {
+                    System.err.println("[JwtKeySet] WARNING: Skipping " + file.getFileName() + ": " + e.getMessage());
+                }
+            }
+        }
+        publish(loaded);
+    }
+
+    private void publish(Map<String, Key> loaded) {
+        long now = System.currentTimeMillis();
+        Key newest = null;
+        Key pending = null;
+        for (Key key : loaded.values()) {
+            if (key.privateKey == null) continue;
+            if (key.activates > now) {
+                if (pending == null || key.activates > pending.activates) pending = key;
+            } else if (newest == null || key.activates > newest.activates) {
+                newest = key;
+            }
+        }
+        keys = Collections.unmodifiableMap(loaded);
+        if (newest != null) signingKey = newest;
+        nextKey = pending;
+    }
+
+    /**
+     * Read the switch-over time, recording it if this is the directory's first
+     * open. A directory that already holds keys from before the marker existed
+     * dates from its oldest key.
+     */
+    private long readSince() throws IOException {
+        Path file = directory.resolve(SINCE_FILE);
+        if (!Files.exists(file)) {
+            long since = System.currentTimeMillis();
+            for (Key key : keys.values()) since = Math.min(since, key.created);
+            Path temp = Files.createTempFile(directory, SINCE_FILE + ".", ".tmp");
+            try {
+                Files.write(temp, Long.toString(since).getBytes(StandardCharsets.UTF_8));
+                // No REPLACE_EXISTING: if another node recorded it first, keep theirs
+                Files.move(temp, file);
+            } catch (FileAlreadyExistsException e) {
+                // Read the winner below
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        try {
+            return Long.parseLong(new String(Files.readAllBytes(file), StandardCharsets.UTF_8).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Corrupt keyset marker " + file);
+        }
+    }
+
+    private Key readKey(Path file) throws IOException, GeneralSecurityException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        String alg = props.getProperty("alg");
+        KeyFactory factory = KeyFactory.getInstance(keyAlgorithm(alg));
+        PublicKey publicKey = factory.generatePublic(
+            new X509EncodedKeySpec(Base64.getDecoder().decode(props.getProperty("public"))));
+        String encodedPrivate = props.getProperty("private");
+        PrivateKey privateKey = encodedPrivate == null ? null
+            : factory.generatePrivate(new PKCS8EncodedKeySpec(Base64.getDecoder().decode(encodedPrivate)));
+
+        String name = file.getFileName().toString();
+        long created = Long.parseLong(props.getProperty("created"));
+        return new Key(name.substring(0, name.length() - FILE_SUFFIX.length()), alg, created,
+            Long.parseLong(props.getProperty("activates", Long.toString(created))), publicKey, privateKey);
+    }
+
+    private static String keyAlgorithm(String alg) {
+        if ("ES256".equals(alg)) return "EC";
+        if ("EdDSA".equals(alg)) return "Ed25519";
+        throw new IllegalArgumentException("Unknown alg " + alg);
+    }
+
+    // ========================================================================
+    // Rotation
+    // ========================================================================
+
+    /**
+     * Publish the next signing key if the current one reaches the rotation
+     * interval within ACTIVATION_DELAY_MS. The first key of an empty keyset is
+     * active immediately.
+     */
+    synchronized void rotateIfDue() throws IOException, GeneralSecurityException {
+        if (!isRotationDue()) return;
+
+        try (FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = channel.tryLock()) {
+            if (lock == null) return;  // another node is rotating; its key arrives with the next reload
+
+            // Another node may have published the next key since our last reload
+            reload();
+            if (!isRotationDue()) return;
+            long now = System.currentTimeMillis();
+            generateKey(signingKey == null ? now
+                : Math.max(now + ACTIVATION_DELAY_MS, signingKey.activates + rotationMs));
+        }
+    }
+
+    private boolean isRotationDue() {
+        Key current = signingKey;
+        return nextKey == null && (current == null ||
+            System.currentTimeMillis() - current.activates >= rotationMs - ACTIVATION_DELAY_MS);
+    }
+
+    private void generateKey(long activates) throws IOException, GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(keyAlgorithm(algorithm));
+        if ("ES256".equals(algorithm)) generator.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair pair = generator.generateKeyPair();
+
+        // kid: first 96 bits of the SHA-256 of the public key
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(pair.getPublic().getEncoded());
+        String kid = Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(digest, 12));
+        long created = System.currentTimeMillis();
+
+        Properties props = new Properties();
+        props.setProperty("alg", algorithm);
+        props.setProperty("created", Long.toString(created));
+        props.setProperty("activates", Long.toString(activates));
+        props.setProperty("public", Base64.getEncoder().encodeToString(pair.getPublic().getEncoded()));
+        props.setProperty("private", Base64.getEncoder().encodeToString(pair.getPrivate().getEncoded()));
+
+        Path file = directory.resolve(kid + FILE_SUFFIX);
+        Path temp = directory.resolve(kid + ".tmp");
+        Files.deleteIfExists(temp);
+        try {
+            // Private key material - owner read/write only
+            Files.createFile(temp, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            props.store(writer, "MyBible JWT signing key");
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+
+        Map<String, Key> updated = new HashMap<>(keys);
+        updated.put(kid, new Key(kid, algorithm, created, activates, pair.getPublic(), pair.getPrivate()));
+        publish(updated);
+        System.out.println("[JwtKeySet] Published signing key " + kid + " (" + algorithm + "), active " +
+            (activates <= created ? "now" : "in " + (activates - created) / 1000 + "s"));
+    }
+
+    /**
+     * Delete keys activated longer ago than rotation + token lifetime, except the signing key
+     */
+    synchronized void purgeRetired() throws IOException {
+        long now = System.currentTimeMillis();
+        Map<String, Key> kept = new HashMap<>(keys);
+        boolean changed = false;
+        for (Key key : keys.values()) {
+            if (key != signingKey && now - key.activates > retentionMs) {
+                Files.deleteIfExists(directory.resolve(key.kid + FILE_SUFFIX));
+                kept.remove(key.kid);
+                changed = true;
+                System.out.println("[JwtKeySet] Retired key " + key.kid);
+            }
+        }
+        if (changed) publish(kept);
+    }
+
+    // ========================================================================
+    // JWKS
+    // ========================================================================
+
+    /**
+     * Public keys as a JWK Set document, for other services verifying our tokens
+     */
+    public String toJwks() {
+        StringBuilder json = new StringBuilder("{\"keys\":[");
+        boolean first = true;
+        for (Key key : keys.values()) {
+            if (!first) json.append(",");
+            first = false;
+            json.append("{\"kid\":\"").append(key.kid).append("\",\"use\":\"sig\",\"alg\":\"").append(key.alg).append("\",");
+            if (key.publicKey instanceof ECPublicKey) {
+                ECPublicKey ec = (ECPublicKey) key.publicKey;
+                json.append("\"kty\":\"EC\",\"crv\":\"P-256\",");
+                json.append("\"x\":\"").append(base64Url(unsigned(ec.getW().getAffineX(), 32))).append("\",");
+                json.append("\"y\":\"").append(base64Url(unsigned(ec.getW().getAffineY(), 32))).append("\"}");
+            } else {
+                // X.509 encoding of an Ed25519 key ends with the 32-byte raw key
+                byte[] encoded = key.publicKey.getEncoded();
+                json.append("\"kty\":\"OKP\",\"crv\":\"Ed25519\",");
+                json.append("\"x\":\"").append(base64Url(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length)))
+                    .append("\"}");
+            }
+        }
+        return json.append("]}").toString();
+    }
+
+    private static byte[] unsigned(BigInteger value, int length) {
+        byte[] bytes = value.toByteArray();
+        byte[] out = new byte[length];
+        int copy = Math.min(bytes.length, length);
+        System.arraycopy(bytes, bytes.length - copy, out, length - copy, copy);
+        return out;
+    }
+
+    private static String base64Url(byte[] bytes) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
@@ -0,0 +1,132 @@
+package com.mybible.util;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * PasswordHasher - Bounded thread pool for PBKDF2 password work
+ *
+ * Login and register run PBKDF2 on a small dedicated pool (half the cores by
+ * default), so a burst of logins can use at most that share of the CPU and
+ * the remaining cores keep serving Bible reads. The request thread still waits
+ * for its result, but never for long: the queue is bounded, and a task that
+ * has not finished within the time a full queue should take to drain (hash
+ * time x (queue per thread + 2)) is abandoned. Either way the call fails fast
+ * with RejectedExecutionException and the endpoint answers 503, so at most
+ * threads + queue request threads are ever waiting on the pool.
+ *
+ * Usage:
+ *   HashUtil.calibrate(200);
+ *   PasswordHasher.getInstance().configure(2, 16);  // after calibrate(), which sets the hash time
+ *   String stored = PasswordHasher.getInstance().hash(password);
+ *   PasswordHasher.VerifyResult result = PasswordHasher.getInstance().verify(password, storedHash);
+ *   if (result.matches && result.upgradedHash != null) ...save result.upgradedHash
+ */
+public class PasswordHasher {
+
+    private static PasswordHasher instance;
+
+    private volatile ThreadPoolExecutor executor;
+    private volatile long maxWaitMs;
+
+    private PasswordHasher() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        configure(threads, threads * 8);
+    }
+
+    public static synchronized PasswordHasher getInstance() {
+        if (instance == null) {
+            instance = new PasswordHasher();
+        }
+        return instance;
+    }
+
+    /**
+     * Replace the pool (tasks already queued on the old one still finish)
+     *
+     * @param threads concurrent hashes
+     * @param queueSize hashes allowed to wait before requests are shed
+     */
+    public synchronized void configure(int threads, int queueSize) {
+        if (threads <= 0 || queueSize <= 0) {
+            throw new IllegalArgumentException("Threads and queue size must be positive");
+        }
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor replacement = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueSize), r -> {
+                Thread thread = new Thread(r, "password-hash-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.AbortPolicy());
+        replacement.allowCoreThreadTimeOut(true);
+
+        ThreadPoolExecutor previous = executor;
+        maxWaitMs = HashUtil.getEstimatedHashMs() * (queueSize / threads + 2);
+        executor = replacement;
+        if (previous != null) previous.shutdown();
+        System.out.println("[PasswordHasher] " + threads + " threads, queue " + queueSize +
+            ", max wait " + maxWaitMs + "ms");
+    }
+
+    /**
+     * Hash a new password (register, password change)
+     *
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public String hash(String password) {
+        return run(() -> HashUtil.hashPassword(password));
+    }
+
+    /**
+     * Verify a password; on success also rehash it if the stored hash is
+     * legacy or below the current cost
+     *
+     * @throws RejectedExecutionException if the hasher is overloaded
+     */
+    public VerifyResult verify(String password, String storedHash) {
+        return run(() -> {
+            if (!HashUtil.verifyPassword(password, storedHash)) {
+                if (HashUtil.needsRehash(storedHash)) {
+                    // Legacy hashes fail fast; spend the same PBKDF2 time as a current-cost check
+                    HashUtil.verifyPassword(password, HashUtil.getDummyHash());
+                }
+                return new VerifyResult(false, null);
+            }
+            String upgraded = HashUtil.needsRehash(storedHash) ? HashUtil.hashPassword(password) : null;
+            return new VerifyResult(true, upgraded);
+        });
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            throw new RejectedExecutionException("Password hashing queue is full");
+        }
+        try {
+            return future.get(maxWaitMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new RejectedExecutionException("Password hashing timed out");
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for password hashing");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new RuntimeException(cause);
+        }
+    }
+
+    public static class VerifyResult {
+        public final boolean matches;
+        public final String upgradedHash;  // new hash to store, or null if none needed
+
+        public VerifyResult(boolean matches, String upgradedHash) {
+            this.matches = matches;
+            this.upgradedHash = upgradedHash;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.mybible.util;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * ReferenceParser - Parse human-written scripture references
+ *
+ * Accepts lists such as "John 3:16; Rom 8:28-30, 32; Ps 23; 1 Cor 13" and
+ * resolves book names and common abbreviations (Gen, Ex, Ps, Mt, Jn, 1 Cor,
+ * II Kings, api.bible ids like JHN...) to BibleService.BOOK_ORDER names.
+ *
+ * Grammar, per ';'-separated segment:
+ *   [book] C             whole chapter          [book] C-C2         chapter span
+ *   [book] C:V           single verse           [book] C:V-V2       verse span
+ *   [book] C:V-C2:V2     span across chapters   [book]              whole book
+ * Comma-separated items continue the segment: after C:V a bare number is a
+ * verse in the same chapter, otherwise it is a chapter. A segment without a
+ * book continues the previous book. For one-chapter books (Jude, Philemon...)
+ * a bare number is a verse.
+ *
+ * Usage:
+ *   for (ReferenceParser.Reference ref : ReferenceParser.parse("John 3:16; Rom 8:28-30")) {
+ *       if (ref.isValid()) ...ref.book, ref.startChapter, ref.startVerse...
+ *   }
+ */
+public class ReferenceParser {
+
+    private static final int MAX_NUMBER = 999;
+
+    // Optional ordinal, then a name that starts with a letter; the rest is the location
+    private static final Pattern BOOK_AND_LOCATION = Pattern.compile(
+        "^((?:[1-3]|i{1,3}|1st|2nd|3rd|first|second|third)?\\s*\\p{L}[\\p{L} .']*?)\\.?\\s*(\\d.*)?$",
+        Pattern.CASE_INSENSITIVE);
+
+    // Normalized alias -> BOOK_ORDER name
+    private static final Map<String, String> ALIASES = new HashMap<>();
+    private static final Map<String, Integer> CHAPTER_COUNTS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < BibleService.BOOK_ORDER.length; i++) {
+            String book = BibleService.BOOK_ORDER[i];
+            CHAPTER_COUNTS.put(book, BibleService.CHAPTER_COUNTS[i]);
+            ALIASES.put(normalize(book), book);
+        }
+        for (Map.Entry<String, String> entry : ApiBibleService.BOOK_IDS.entrySet()) {
+            ALIASES.putIfAbsent(normalize(entry.getValue()), entry.getKey());
+        }
+
+        // Common abbreviations that are neither api.bible ids nor unique prefixes
+        alias("Judges", "jdg", "jdgs");
+        alias("Psalms", "pss");
+        alias("Song of Solomon", "sos", "songofsongs", "canticles");
+        alias("Philippians", "phil");
+        alias("Matthew", "mt");
+        alias("Mark", "mk");
+        alias("Luke", "lk");
+        alias("John", "jn");
+        alias("1 John", "1jhn");
+        alias("2 John", "2jhn");
+        alias("3 John", "3jhn");
+        alias("James", "jm");
+        alias("Revelation", "revelations", "apocalypse");
+        alias("Deuteronomy", "dt");
+        alias("Numbers", "nm", "nb");
+        alias("Joel", "jl");
+        alias("Habakkuk", "hb");
+        alias("Zechariah", "zc");
+        alias("Zephaniah", "zp");
+        alias("Romans", "rm");
+    }
+
+    private static void alias(String book, String... names) {
+        for (String name : names) {
+            ALIASES.put(name, book);
+        }
+    }
+
+    private ReferenceParser() {}
+
+    /**
+     * One resolved passage. Verse 0 means "from the start" (startVerse) or
+     * "to the end" (endVerse) of the chapter.
+     */
+    public static class Reference {
+        public final String input;       // the text this came from
+        public final String book;        // BOOK_ORDER name, or null if unresolved
+        public final int startChapter;
+        public final int startVerse;
+        public final int endChapter;
+        public final int endVerse;
+
+        Reference(String input, String book, int startChapter, int startVerse, int endChapter, int endVerse) {
+            this.input = input;
+            this.book = book;
+            this.startChapter = startChapter;
+            this.startVerse = startVerse;
+            this.endChapter = endChapter;
+            this.endVerse = endVerse;
+        }
+
+        static Reference invalid(String input) {
+            return new Reference(input, null, 0, 0, 0, 0);
+        }
+
+        public boolean isValid() {
+            return book != null;
+        }
+
+        /**
+         * Canonical form, e.g. "Romans 8:28-30", "Psalms 23", "Genesis 1:1-2:3"
+         */
+        public String getLabel() {
+            if (book == null) return input;
+            StringBuilder sb = new StringBuilder(book).append(' ').append(startChapter);
+            if (startVerse > 0) sb.append(':').append(startVerse);
+
+            if (endChapter != startChapter) {
+                sb.append('-').append(endChapter);
+                if (endVerse > 0) sb.append(':').append(endVerse);
+            } else if (endVerse > 0 && endVerse != startVerse) {
+                sb.append('-').append(endVerse);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Parse a list of references. Unrecognized parts come back as invalid
+     * references (isValid() false) so callers can report them in place.
+     */
+    public static List<Reference> parse(String input) {
+        List<Reference> result = new ArrayList<>();
+        if (input == null) return result;
+
+        String book = null;
+        for (String raw : input.split("[;\\n]")) {
+            String segment = raw.trim();
+            if (segment.isEmpty()) continue;
+
+            String location = segment;
+            Matcher m = BOOK_AND_LOCATION.matcher(segment);
+            if (m.matches()) {
+                book = resolveBook(m.group(1));
+                if (book == null) {
+                    result.add(Reference.invalid(segment));
+                    continue;
+                }
+                location = m.group(2);
+                if (location == null) {
+                    result.add(new Reference(segment, book, 1, 0, CHAPTER_COUNTS.get(book), 0));
+                    continue;
+                }
+            } else if (book == null) {
+                result.add(Reference.invalid(segment));
+                continue;
+            }
+            parseLocation(segment, book, location, result);
+        }
+        return result;
+    }
+
+    /**
+     * Resolve a book name or abbreviation to its BOOK_ORDER name. Falls back to
+     * a unique prefix match ("Gen", "Matt", "Rom").
+     *
+     * @return the book name, or null if unknown or ambiguous
+     */
+    public static String resolveBook(String name) {
+        if (name == null) return null;
+        String key = normalize(name);
+        if (key.isEmpty()) return null;
+
+        String book = ALIASES.get(key);
+        if (book != null) return book;
+
+        for (String candidate : BibleService.BOOK_ORDER) {
+            if (normalize(candidate).startsWith(key)) {
+                if (book != null) return null;  // ambiguous
+                book = candidate;
+            }
+        }
+        return book;
+    }
+
+    /**
+     * Lowercase, drop spaces and dots, and turn a leading ordinal into a digit
+     * ("II Kings" -> "2kings", "1st John" -> "1john")
+     */
+    private static String normalize(String name) {
+        String s = name.toLowerCase().replace(".", " ").trim();
+        String[][] ordinals = {
+            {"iii ", "3"}, {"ii ", "2"}, {"i ", "1"},
+            {"first ", "1"}, {"second ", "2"}, {"third ", "3"},
+            {"1st ", "1"}, {"2nd ", "2"}, {"3rd ", "3"}
+        };
+        for (String[] ordinal : ordinals) {
+            if (s.startsWith(ordinal[0])) {
+                s = ordinal[1] + s.substring(ordinal[0].length());
+                break;
+            }
+        }
+        return s.replace(" ", "");
+    }
+
+    // ========================================================================
+    // Locations
+    // ========================================================================
+
+    private static void parseLocation(String segment, String book, String location, List<Reference> out) {
+        String normalized = location.replace('\u2013', '-').replace('\u2014', '-').replace(" ", "");
+        boolean singleChapter = CHAPTER_COUNTS.get(book) == 1;
+        int chapter = singleChapter ? 1 : 0;
+        boolean verseContext = singleChapter;
+
+        for (String item : normalized.split(",")) {
+            if (item.isEmpty()) continue;
+            try {
+                int dash = item.indexOf('-');
+                String first = dash >= 0 ? item.substring(0, dash) : item;
+                String second = dash >= 0 ? item.substring(dash + 1) : null;
+
+                int startChapter;
+                int startVerse;
+                int colon = chapterSeparator(first);
+                if (colon >= 0) {
+                    startChapter = number(first.substring(0, colon));
+                    startVerse = number(first.substring(colon + 1));
+                    chapter = startChapter;
+                    verseContext = true;
+                } else if (verseContext) {
+                    startChapter = chapter;
+                    startVerse = number(first);
+                } else {
+                    startChapter = number(first);
+                    startVerse = 0;
+                }
+
+                int endChapter = startChapter;
+                int endVerse = startVerse;
+                if (second != null) {
+                    int secondColon = chapterSeparator(second);
+                    if (secondColon >= 0) {
+                        endChapter = number(second.substring(0, secondColon));
+                        endVerse = number(second.substring(secondColon + 1));
+                    } else if (startVerse > 0) {
+                        endVerse = number(second);
+                    } else {
+                        endChapter = number(second);
+                    }
+                }
+
+                if (endChapter < startChapter
+                        || (endChapter == startChapter && endVerse > 0 && endVerse < startVerse)) {
+                    out.add(Reference.invalid(segment));
+                    continue;
+                }
+                out.add(new Reference(segment, book, startChapter, startVerse, endChapter, endVerse));
+            } catch (NumberFormatException e) {
+                out.add(Reference.invalid(segment));
+            }
+        }
+    }
+
+    /**
+     * Index of the chapter/verse separator (':' or '.'), or -1
+     */
+    private static int chapterSeparator(String s) {
+        int colon = s.indexOf(':');
+        return colon >= 0 ? colon : s.indexOf('.');
+    }
+
+    private static int number(String s) {
+        int n = Integer.parseInt(s);
+        if (n < 1 || n > MAX_NUMBER) throw new NumberFormatException("Out of range: " + s);
+        return n;
+    }
+}
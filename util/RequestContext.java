@@ -5,15 +5,23 @@ import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import jakarta.servlet.http.Cookie;
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * RequestContext - Stateless request context extraction from JWT tokens
  *
  * This class provides a bridge between session-based and JWT-based auth.
  * It tries JWT first, falls back to session for backward compatibility.
+ * Revoked tokens (TokenRevocationList) are rejected. Given the response,
+ * an expired auth_token cookie is renewed from the refresh_token cookie.
+ *
+ * One context is kept per request (request attribute ATTRIBUTE, installed by
+ * the router's request context filter) and nothing is decoded until a getter
+ * is first called, so endpoints that never ask who the user is do no auth
+ * work. The session is only looked up when the client sent a session id.
  *
  * Usage:
- *   RequestContext ctx = RequestContext.fromRequest(request);
+ *   RequestContext ctx = RequestContext.fromRequest(request, response);
  *   if (!ctx.isAuthenticated()) {
  *       response.setStatus(401);
  *       return;
@@ -22,18 +30,35 @@ import java.io.IOException;
  */
 public class RequestContext {
 
+    public static final String ATTRIBUTE = "com.mybible.util.RequestContext";
+
+    // Failed-token log lines: 10/min with bursts of 5, the rest are counted
+    private static final TokenBucket LOG_LIMIT = new TokenBucket(10, 5);
+    private static final AtomicLong suppressedLogs = new AtomicLong();
+
+    private final HttpServletRequest request;
+    private HttpServletResponse response;  // for renewed cookies; null to skip renewal
+    private boolean resolved;
+
     // Instance fields
     private String userId;
     private String email;
     private String role;
     private String name;
     private boolean authenticated;
-    private String authMethod;  // "jwt" or "session"
+    private String authMethod;  // "jwt", "jwt-cookie", "jwt-refresh" or "session"
+    private String tokenId;     // jti of the access token, if any
+    private long tokenExpiresAt;
+
+    public static final String AUTH_COOKIE = "auth_token";
+    public static final String REFRESH_COOKIE = "refresh_token";
 
     /**
      * Private constructor - use fromRequest() factory method
      */
-    private RequestContext() {
+    private RequestContext(HttpServletRequest request, HttpServletResponse response) {
+        this.request = request;
+        this.response = response;
     }
 
     /**
@@ -43,97 +68,218 @@ public class RequestContext {
      * @return RequestContext with user information if authenticated
      */
     public static RequestContext fromRequest(HttpServletRequest request) {
-        RequestContext ctx = new RequestContext();
+        return fromRequest(request, null);
+    }
+
+    /**
+     * Extract context from request; if the access cookie is missing or expired
+     * but a valid refresh_token cookie is present, rotate the tokens and set
+     * new cookies on the response. Repeated calls for the same request return
+     * the same context.
+     *
+     * @param request The HTTP servlet request
+     * @param response The response for renewed cookies, or null to skip renewal
+     * @return RequestContext with user information if authenticated
+     */
+    public static RequestContext fromRequest(HttpServletRequest request, HttpServletResponse response) {
+        Object existing = request.getAttribute(ATTRIBUTE);
+        if (existing instanceof RequestContext) {
+            RequestContext ctx = (RequestContext) existing;
+            if (ctx.response == null && !ctx.resolved) {
+                ctx.response = response;
+            }
+            return ctx;
+        }
+        return attach(request, response);
+    }
+
+    /**
+     * Install an unresolved context on the request (called once per request by the filter)
+     */
+    public static RequestContext attach(HttpServletRequest request, HttpServletResponse response) {
+        RequestContext ctx = new RequestContext(request, response);
+        request.setAttribute(ATTRIBUTE, ctx);
+        return ctx;
+    }
+
+    private void resolve() {
+        if (resolved) return;
+        resolved = true;
 
         // Try JWT from Authorization header first
         String authHeader = request.getHeader("Authorization");
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
             try {
-                String token = authHeader.substring(7);
-                JWTUtil.JWTPayload payload = JWTUtil.verify(token);
-
-                ctx.userId = payload.userId;
-                ctx.email = payload.email;
-                ctx.role = payload.role;
-                ctx.authenticated = true;
-                ctx.authMethod = "jwt";
-
-                return ctx;
+                applyToken(JWTUtil.verify(authHeader.substring(7)), "jwt");
+                return;
             } catch (Exception e) {
                 // JWT invalid - fall through to cookie/session
-                System.out.println("[RequestContext] JWT header verification failed: " + e.getMessage());
+                logFailure("JWT header verification failed", e);
             }
         }
 
         // Try JWT from cookie (for browser-based auth without sessions)
+        String authToken = null;
+        String refreshToken = null;
         Cookie[] cookies = request.getCookies();
         if (cookies != null) {
             for (Cookie cookie : cookies) {
-                if ("auth_token".equals(cookie.getName())) {
-                    try {
-                        String token = cookie.getValue();
-                        JWTUtil.JWTPayload payload = JWTUtil.verify(token);
-
-                        ctx.userId = payload.userId;
-                        ctx.email = payload.email;
-                        ctx.role = payload.role;
-                        ctx.authenticated = true;
-                        ctx.authMethod = "jwt-cookie";
-
-                        return ctx;
-                    } catch (Exception e) {
-                        // Invalid cookie token - continue to session
-                        System.out.println("[RequestContext] JWT cookie verification failed: " + e.getMessage());
-                    }
-                    break;
+                if (AUTH_COOKIE.equals(cookie.getName())) {
+                    authToken = cookie.getValue();
+                } else if (REFRESH_COOKIE.equals(cookie.getName())) {
+                    refreshToken = cookie.getValue();
                 }
             }
         }
+        if (authToken != null && !authToken.isEmpty()) {
+            try {
+                applyToken(JWTUtil.verify(authToken), "jwt-cookie");
+                return;
+            } catch (Exception e) {
+                // Invalid cookie token - try refresh, then session
+                logFailure("JWT cookie verification failed", e);
+            }
+        }
+
+        // Renew an expired browser login from the refresh cookie
+        if (refreshToken != null && !refreshToken.isEmpty() && response != null) {
+            try {
+                JWTUtil.TokenPair tokens = JWTUtil.refresh(refreshToken);
+                applyToken(JWTUtil.verify(tokens.accessToken), "jwt-refresh");
+                setAuthCookies(response, tokens);
+                return;
+            } catch (Exception e) {
+                logFailure("Token refresh failed", e);
+                clearAuthCookies(response);
+            }
+        }
 
-        // Fall back to session (for backward compatibility during transition)
+        // Fall back to session (for backward compatibility during transition);
+        // clients that never had a session skip the session store entirely
+        if (request.getRequestedSessionId() == null) {
+            return;
+        }
         HttpSession session = request.getSession(false);
         if (session != null && session.getAttribute("userId") != null) {
-            ctx.userId = (String) session.getAttribute("userId");
-            ctx.email = (String) session.getAttribute("email");
-            ctx.name = (String) session.getAttribute("name");
-            ctx.role = (String) session.getAttribute("role");
-            ctx.authenticated = true;
-            ctx.authMethod = "session";
+            this.userId = (String) session.getAttribute("userId");
+            this.email = (String) session.getAttribute("email");
+            this.name = (String) session.getAttribute("name");
+            this.role = (String) session.getAttribute("role");
+            this.authenticated = true;
+            this.authMethod = "session";
+        }
+    }
 
-            return ctx;
+    private static void logFailure(String message, Exception e) {
+        if (!LOG_LIMIT.tryAcquire()) {
+            suppressedLogs.incrementAndGet();
+            return;
         }
+        long suppressed = suppressedLogs.getAndSet(0);
+        System.out.println("[RequestContext] " + message + ": " + e.getMessage() +
+            (suppressed > 0 ? " (" + suppressed + " similar messages suppressed)" : ""));
+    }
 
-        // Not authenticated
-        ctx.authenticated = false;
-        return ctx;
+    private void applyToken(JWTUtil.JWTPayload payload, String method) {
+        this.userId = payload.userId;
+        this.email = payload.email;
+        this.role = payload.role;
+        this.tokenId = payload.jti;
+        this.tokenExpiresAt = payload.expiresAt;
+        this.authenticated = true;
+        this.authMethod = method;
+    }
+
+    /**
+     * Set the auth_token and refresh_token cookies for a login or refresh
+     */
+    public static void setAuthCookies(HttpServletResponse response, JWTUtil.TokenPair tokens) {
+        addCookie(response, AUTH_COOKIE, tokens.accessToken, (int) tokens.expiresInSeconds);
+        addCookie(response, REFRESH_COOKIE, tokens.refreshToken, (int) (JWTUtil.getRefreshExpirationMs() / 1000));
+    }
+
+    /**
+     * Revoke every token the request carries (Authorization header, auth and refresh cookies)
+     *
+     * @return the number of tokens revoked
+     */
+    public static int revokeTokens(HttpServletRequest request) {
+        int revoked = 0;
+        String authHeader = request.getHeader("Authorization");
+        if (authHeader != null && authHeader.startsWith("Bearer ") && JWTUtil.revoke(authHeader.substring(7))) {
+            revoked++;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if ((AUTH_COOKIE.equals(cookie.getName()) || REFRESH_COOKIE.equals(cookie.getName()))
+                        && JWTUtil.revoke(cookie.getValue())) {
+                    revoked++;
+                }
+            }
+        }
+        return revoked;
+    }
+
+    public static void clearAuthCookies(HttpServletResponse response) {
+        addCookie(response, AUTH_COOKIE, "", 0);
+        addCookie(response, REFRESH_COOKIE, "", 0);
+    }
+
+    private static void addCookie(HttpServletResponse response, String name, String value, int maxAge) {
+        Cookie cookie = new Cookie(name, value);
+        cookie.setPath("/");
+        cookie.setMaxAge(maxAge);
+        cookie.setHttpOnly(true);
+        response.addCookie(cookie);
     }
 
     // Getters
     public String getUserId() {
+        resolve();
         return this.userId;
     }
 
     public String getEmail() {
+        resolve();
         return this.email;
     }
 
     public String getName() {
+        resolve();
         return this.name;
     }
 
     public String getRole() {
+        resolve();
         return this.role;
     }
 
     public boolean isAuthenticated() {
+        resolve();
         return this.authenticated;
     }
 
     public String getAuthMethod() {
+        resolve();
         return this.authMethod;
     }
 
+    /**
+     * @return the access token's jti, or null (session auth, or a token issued before revocation support)
+     */
+    public String getTokenId() {
+        resolve();
+        return this.tokenId;
+    }
+
+    public long getTokenExpiresAt() {
+        resolve();
+        return this.tokenExpiresAt;
+    }
+
     public boolean isAdmin() {
+        resolve();
         return "admin".equals(this.role);
     }
 
@@ -144,6 +290,7 @@ public class RequestContext {
      * @return true if authenticated, false if 401 was sent
      */
     public boolean requireAuth(HttpServletResponse response) {
+        resolve();
         if (!this.authenticated) {
             try {
                 response.setStatus(401);
@@ -165,6 +312,7 @@ public class RequestContext {
      * @return true if authenticated, false if redirect was sent
      */
     public boolean requireAuthOrRedirect(HttpServletResponse response, String loginPath) {
+        resolve();
         if (!this.authenticated) {
             try {
                 response.sendRedirect(loginPath);
@@ -181,6 +329,7 @@ public class RequestContext {
      */
     @Override
     public String toString() {
+        resolve();
         return String.format("RequestContext[authenticated=%s, method=%s, userId=%s, email=%s, role=%s]",
             authenticated, authMethod, userId, email, role);
     }
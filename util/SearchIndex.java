@@ -0,0 +1,698 @@
+package com.mybible.util;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * SearchIndex - Immutable positional inverted index over one translation's verses
+ *
+ * Built once at load time from a VerseStore. Each normalized term maps to a posting
+ * list of verse ordinals, and each posting carries the term's token positions so
+ * phrase queries can be verified without touching verse text.
+ *
+ * Layout:
+ *   terms[]       sorted term dictionary (binary search, prefix ranges)
+ *   termStarts[]  start of each term's postings in docs[] (length = terms + 1)
+ *   docs[]        verse ordinals, ascending within each term
+ *   posStarts[]   start of each posting's positions (length = docs + 1)
+ *   positions[]   token positions within the verse (16-bit; verses are far shorter)
+ *   docLengths[]  token count of each verse, for BM25 length normalization
+ *
+ * Query syntax:
+ *   light darkness      all words must appear (AND)
+ *   "let there be"      exact phrase
+ *   begin*              prefix match (at least MIN_PREFIX_LENGTH letters)
+ *
+ * search() returns matches in canonical order; searchRanked() scores them with
+ * Okapi BM25 and keeps the best k in a bounded heap, so ranking never
+ * materializes the full match set.
+ *
+ * Normalization folds case and diacritics plus Early Modern English spelling
+ * variants (u/v, i/j, long s, ligatures), so "vpon" matches "upon" and
+ * "Iesus" matches "Jesus".
+ */
+public class SearchIndex {
+
+    static final int NO_MORE = Integer.MAX_VALUE;
+    // Shorter prefixes expand to a large part of the dictionary (2 letters: ~500 terms in the KJV)
+    static final int MIN_PREFIX_LENGTH = 3;
+
+    // BM25 parameters (standard defaults)
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+
+    private final String[] terms;
+    private final int[] termStarts;
+    private final int[] docs;
+    private final int[] posStarts;
+    private final char[] positions;
+    private final char[] docLengths;
+    private final float avgDocLength;
+
+    SearchIndex(String[] terms, int[] termStarts, int[] docs, int[] posStarts, char[] positions,
+                        char[] docLengths) {
+        this.terms = terms;
+        this.termStarts = termStarts;
+        this.docs = docs;
+        this.posStarts = posStarts;
+        this.positions = positions;
+        this.docLengths = docLengths;
+
+        long total = 0;
+        for (char length : docLengths) total += length;
+        this.avgDocLength = docLengths.length > 0 ? Math.max(1f, (float) total / docLengths.length) : 1f;
+    }
+
+    // ========================================================================
+    // Building
+    // ========================================================================
+
+    /**
+     * Build an index over every verse in the store
+     */
+    public static SearchIndex build(VerseStore store) {
+        Map<String, Integer> termIds = new HashMap<>();
+        List<String> termList = new ArrayList<>();
+
+        // One (term, ordinal, position) triple per token, in ordinal order
+        int[] tokenTerms = new int[1 << 16];
+        int[] tokenDocs = new int[1 << 16];
+        int[] tokenPositions = new int[1 << 16];
+        int tokens = 0;
+
+        List<String> verseTerms = new ArrayList<>();
+        int count = store.getVerseCount();
+        char[] docLengths = new char[count];
+        for (int ordinal = 0; ordinal < count; ordinal++) {
+            verseTerms.clear();
+            tokenize(store.textAt(ordinal), verseTerms);
+            docLengths[ordinal] = (char) Math.min(verseTerms.size(), Character.MAX_VALUE);
+            for (int position = 0; position < verseTerms.size(); position++) {
+                String term = verseTerms.get(position);
+                Integer id = termIds.get(term);
+                if (id == null) {
+                    id = termList.size();
+                    termIds.put(term, id);
+                    termList.add(term);
+                }
+                if (tokens == tokenTerms.length) {
+                    tokenTerms = Arrays.copyOf(tokenTerms, tokens * 2);
+                    tokenDocs = Arrays.copyOf(tokenDocs, tokens * 2);
+                    tokenPositions = Arrays.copyOf(tokenPositions, tokens * 2);
+                }
+                tokenTerms[tokens] = id;
+                tokenDocs[tokens] = ordinal;
+                tokenPositions[tokens] = position;
+                tokens++;
+            }
+        }
+
+        // Rank terms alphabetically so the dictionary supports prefix ranges
+        String[] sorted = termList.toArray(new String[0]);
+        Arrays.sort(sorted);
+        int termCount = sorted.length;
+        int[] rank = new int[termCount];
+        for (int r = 0; r < termCount; r++) {
+            rank[termIds.get(sorted[r])] = r;
+        }
+
+        // Stable counting sort of tokens by term rank keeps ordinal/position order
+        int[] bucketStarts = new int[termCount + 1];
+        for (int i = 0; i < tokens; i++) {
+            bucketStarts[rank[tokenTerms[i]] + 1]++;
+        }
+        for (int r = 0; r < termCount; r++) {
+            bucketStarts[r + 1] += bucketStarts[r];
+        }
+        int[] fill = Arrays.copyOf(bucketStarts, termCount);
+        int[] order = new int[tokens];
+        for (int i = 0; i < tokens; i++) {
+            order[fill[rank[tokenTerms[i]]]++] = i;
+        }
+
+        // Group each term's tokens into postings (one per verse)
+        int[] docs = new int[tokens];
+        int[] posStarts = new int[tokens + 1];
+        char[] positions = new char[tokens];
+        int[] termStarts = new int[termCount + 1];
+        int postings = 0;
+        for (int r = 0; r < termCount; r++) {
+            termStarts[r] = postings;
+            int lastDoc = -1;
+            for (int k = bucketStarts[r]; k < bucketStarts[r + 1]; k++) {
+                int token = order[k];
+                if (tokenDocs[token] != lastDoc) {
+                    lastDoc = tokenDocs[token];
+                    docs[postings] = lastDoc;
+                    posStarts[postings] = k;
+                    postings++;
+                }
+                positions[k] = (char) Math.min(tokenPositions[token], Character.MAX_VALUE);
+            }
+        }
+        termStarts[termCount] = postings;
+        posStarts[postings] = tokens;
+
+        return new SearchIndex(sorted, termStarts,
+            Arrays.copyOf(docs, postings), Arrays.copyOf(posStarts, postings + 1), positions, docLengths);
+    }
+
+    // Raw columns, for TranslationSnapshot
+    String[] terms() { return terms; }
+    int[] termStarts() { return termStarts; }
+    int[] docs() { return docs; }
+    int[] posStarts() { return posStarts; }
+    char[] positions() { return positions; }
+    char[] docLengths() { return docLengths; }
+
+    public int getTermCount() {
+        return terms.length;
+    }
+
+    /**
+     * Approximate heap footprint of this index in bytes
+     */
+    public long heapBytes() {
+        long bytes = 4L * (termStarts.length + docs.length + posStarts.length)
+            + 2L * (positions.length + docLengths.length);
+        for (String term : terms) {
+            bytes += 48 + term.length();
+        }
+        return bytes;
+    }
+
+    // ========================================================================
+    // Normalization
+    // ========================================================================
+
+    /**
+     * Split text into normalized terms, in order
+     */
+    static void tokenize(CharSequence text, List<String> out) {
+        StringBuilder term = new StringBuilder(16);
+        int len = text.length();
+        for (int i = 0; i < len; i++) {
+            char c = text.charAt(i);
+            if (c == '\'' || c == '\u2019' || Character.getType(c) == Character.NON_SPACING_MARK) {
+                // Apostrophes and combining marks never split a word
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                fold(c, term);
+            } else if (term.length() > 0) {
+                out.add(term.toString());
+                term.setLength(0);
+            }
+        }
+        if (term.length() > 0) {
+            out.add(term.toString());
+        }
+    }
+
+    /**
+     * Append the normalized form of one character
+     */
+    private static void fold(char c, StringBuilder out) {
+        if (c < 0x80) {
+            if (c >= 'A' && c <= 'Z') c = (char) (c + ('a' - 'A'));
+            out.append(foldVariant(c));
+            return;
+        }
+        switch (c) {
+            case '\u017F': out.append('s'); return;                // long s
+            case '\u00DF': out.append("ss"); return;
+            case '\u00E6': case '\u00C6': out.append("ae"); return;
+            case '\u0153': case '\u0152': out.append("oe"); return;
+            case '\u00FE': case '\u00DE': out.append("th"); return;  // thorn
+            case '\u00F0': case '\u00D0': out.append("th"); return;  // eth
+            default:
+                break;
+        }
+        String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+        for (int i = 0; i < decomposed.length(); i++) {
+            char d = decomposed.charAt(i);
+            if (Character.getType(d) != Character.NON_SPACING_MARK) {
+                out.append(foldVariant(Character.toLowerCase(d)));
+            }
+        }
+    }
+
+    /**
+     * Early Modern English used u/v and i/j interchangeably
+     */
+    private static char foldVariant(char c) {
+        if (c == 'v') return 'u';
+        if (c == 'j') return 'i';
+        return c;
+    }
+
+    // ========================================================================
+    // Searching
+    // ========================================================================
+
+    /**
+     * Find verses matching every clause of the query, in canonical order
+     *
+     * @return up to limit verse ordinals, ascending
+     */
+    public int[] search(String query, int limit) {
+        Cursor cursor = parse(query);
+        if (cursor == null || limit <= 0) return new int[0];
+
+        int[] hits = new int[(int) Math.min(limit, cursor.cost())];
+        int n = 0;
+        int doc = cursor.nextDoc();
+        while (doc != NO_MORE && n < hits.length) {
+            hits[n++] = doc;
+            doc = cursor.nextDoc();
+        }
+        return n == hits.length ? hits : Arrays.copyOf(hits, n);
+    }
+
+    /**
+     * Find the k best-scoring verses for the query using BM25
+     *
+     * Matches stream through a bounded min-heap of size k, so memory and
+     * allocation depend on k rather than on the number of matches.
+     */
+    public RankedHits searchRanked(String query, int k) {
+        Cursor cursor = parse(query);
+        if (cursor == null || k <= 0) return new RankedHits(new int[0], new float[0], 0);
+
+        int capacity = (int) Math.min(k, cursor.cost());
+        int[] heapDocs = new int[capacity];
+        float[] heapScores = new float[capacity];
+        int size = 0;
+
+        for (int doc = cursor.nextDoc(); doc != NO_MORE; doc = cursor.nextDoc()) {
+            float score = cursor.score();
+            if (size < capacity) {
+                heapDocs[size] = doc;
+                heapScores[size] = score;
+                siftUp(heapDocs, heapScores, size++);
+            } else if (score > heapScores[0]) {
+                // Ties keep the earlier verse, which is already in the heap
+                heapDocs[0] = doc;
+                heapScores[0] = score;
+                siftDown(heapDocs, heapScores, 0, size);
+            }
+        }
+
+        // Pop the min-heap from the back to produce best-first order
+        for (int end = size - 1; end > 0; end--) {
+            swap(heapDocs, heapScores, 0, end);
+            siftDown(heapDocs, heapScores, 0, end);
+        }
+        return new RankedHits(heapDocs, heapScores, size);
+    }
+
+    /**
+     * Ranked search results, best first
+     */
+    public static class RankedHits {
+        public final int[] ordinals;
+        public final float[] scores;
+        public final int count;
+
+        RankedHits(int[] ordinals, float[] scores, int count) {
+            this.ordinals = ordinals;
+            this.scores = scores;
+            this.count = count;
+        }
+    }
+
+    // Min-heap on score; among equal scores the later verse ranks lower
+    private static boolean worse(int[] docs, float[] scores, int a, int b) {
+        return scores[a] < scores[b] || (scores[a] == scores[b] && docs[a] > docs[b]);
+    }
+
+    private static void siftUp(int[] docs, float[] scores, int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(docs, scores, i, parent)) break;
+            swap(docs, scores, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(int[] docs, float[] scores, int i, int size) {
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) break;
+            if (child + 1 < size && worse(docs, scores, child + 1, child)) child++;
+            if (!worse(docs, scores, child, i)) break;
+            swap(docs, scores, i, child);
+            i = child;
+        }
+    }
+
+    private static void swap(int[] docs, float[] scores, int a, int b) {
+        int d = docs[a];
+        docs[a] = docs[b];
+        docs[b] = d;
+        float s = scores[a];
+        scores[a] = scores[b];
+        scores[b] = s;
+    }
+
+    /**
+     * Parse a query into a cursor; null when nothing can match
+     *
+     * @throws IllegalArgumentException if a prefix term is shorter than MIN_PREFIX_LENGTH
+     */
+    Cursor parse(String query) {
+        if (query == null) return null;
+
+        List<Cursor> clauses = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        int len = query.length();
+        int i = 0;
+        while (i < len) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+                continue;
+            }
+
+            int end;
+            boolean quoted = c == '"';
+            if (quoted) {
+                end = query.indexOf('"', i + 1);
+                if (end < 0) end = len;
+            } else {
+                end = i;
+                while (end < len && !Character.isWhitespace(query.charAt(end)) && query.charAt(end) != '"') end++;
+            }
+            String raw = query.substring(quoted ? i + 1 : i, end);
+            i = quoted ? end + 1 : end;
+
+            boolean prefix = !quoted && raw.endsWith("*");
+            words.clear();
+            tokenize(raw, words);
+            if (words.isEmpty()) continue;
+
+            Cursor clause;
+            if (prefix && words.size() == 1) {
+                if (words.get(0).length() < MIN_PREFIX_LENGTH) {
+                    throw new IllegalArgumentException("Prefix searches need at least " + MIN_PREFIX_LENGTH +
+                        " letters: " + raw);
+                }
+                clause = prefixCursor(words.get(0));
+            } else if (words.size() == 1) {
+                clause = termCursor(words.get(0));
+            } else {
+                clause = phraseCursor(words);
+            }
+            if (clause == null) return null;   // a required clause has no matches
+            clauses.add(clause);
+        }
+
+        if (clauses.isEmpty()) return null;
+        if (clauses.size() == 1) return clauses.get(0);
+        return new AndCursor(clauses.toArray(new Cursor[0]));
+    }
+
+    private TermCursor termCursor(String term) {
+        int t = Arrays.binarySearch(terms, term);
+        return t >= 0 ? new TermCursor(t) : null;
+    }
+
+    private Cursor prefixCursor(String prefix) {
+        int lo = Arrays.binarySearch(terms, prefix);
+        if (lo < 0) lo = -lo - 1;
+        int hi = lo;
+        while (hi < terms.length && terms[hi].startsWith(prefix)) hi++;
+        if (hi == lo) return null;
+        if (hi - lo == 1) return new TermCursor(lo);
+
+        TermCursor[] subs = new TermCursor[hi - lo];
+        for (int t = lo; t < hi; t++) {
+            subs[t - lo] = new TermCursor(t);
+        }
+        return new UnionCursor(subs);
+    }
+
+    private Cursor phraseCursor(List<String> words) {
+        TermCursor[] subs = new TermCursor[words.size()];
+        for (int i = 0; i < subs.length; i++) {
+            subs[i] = termCursor(words.get(i));
+            if (subs[i] == null) return null;
+        }
+        return new PhraseCursor(subs);
+    }
+
+    // ========================================================================
+    // Cursors (one set per query - the index itself is never mutated)
+    // ========================================================================
+
+    abstract static class Cursor {
+        int doc = -1;
+
+        /**
+         * Move to the next matching verse ordinal, or NO_MORE
+         */
+        abstract int nextDoc();
+
+        /**
+         * Move to the first matching ordinal >= target, or NO_MORE
+         */
+        abstract int advance(int target);
+
+        /**
+         * Upper bound on the number of matches
+         */
+        abstract long cost();
+
+        /**
+         * BM25 score of the current verse
+         */
+        abstract float score();
+    }
+
+    final class TermCursor extends Cursor {
+        final int term;
+        private final int end;
+        private int idx;
+
+        TermCursor(int term) {
+            this.term = term;
+            this.idx = termStarts[term] - 1;
+            this.end = termStarts[term + 1];
+        }
+
+        @Override
+        int nextDoc() {
+            idx++;
+            return doc = idx < end ? docs[idx] : NO_MORE;
+        }
+
+        @Override
+        int advance(int target) {
+            if (doc >= target) return doc;
+            // Gallop forward, then binary search the bracketed run
+            int lo = idx + 1;
+            int step = 1;
+            int hi = lo;
+            while (hi < end && docs[hi] < target) {
+                lo = hi + 1;
+                hi += step;
+                step <<= 1;
+            }
+            if (hi > end) hi = end;
+            int found = Arrays.binarySearch(docs, lo, hi, target);
+            idx = found >= 0 ? found : -found - 1;
+            return doc = idx < end ? docs[idx] : NO_MORE;
+        }
+
+        @Override
+        long cost() {
+            return end - termStarts[term];
+        }
+
+        @Override
+        float score() {
+            float n = end - termStarts[term];
+            float idf = (float) Math.log(1 + (docLengths.length - n + 0.5f) / (n + 0.5f));
+            float tf = posStarts[idx + 1] - posStarts[idx];
+            float norm = K1 * (1 - B + B * docLengths[doc] / avgDocLength);
+            return idf * tf * (K1 + 1) / (tf + norm);
+        }
+
+        int posStart() {
+            return posStarts[idx];
+        }
+
+        int posEnd() {
+            return posStarts[idx + 1];
+        }
+    }
+
+    /**
+     * Matches verses containing any of several terms (prefix expansion)
+     */
+    final class UnionCursor extends Cursor {
+        private final TermCursor[] heap;
+
+        UnionCursor(TermCursor[] subs) {
+            this.heap = subs;
+        }
+
+        @Override
+        int nextDoc() {
+            if (doc == NO_MORE) return NO_MORE;
+            int current = doc;
+            while (heap[0].doc <= current) {
+                heap[0].nextDoc();
+                siftDown();
+            }
+            return doc = heap[0].doc;
+        }
+
+        @Override
+        int advance(int target) {
+            while (heap[0].doc < target) {
+                heap[0].advance(target);
+                siftDown();
+            }
+            return doc = heap[0].doc;
+        }
+
+        @Override
+        long cost() {
+            long total = 0;
+            for (TermCursor sub : heap) total += sub.cost();
+            return total;
+        }
+
+        @Override
+        float score() {
+            return scoreFrom(0);
+        }
+
+        // Sub-cursors on the current verse form a subtree at the top of the heap
+        private float scoreFrom(int i) {
+            if (i >= heap.length || heap[i].doc != doc) return 0f;
+            return heap[i].score() + scoreFrom(2 * i + 1) + scoreFrom(2 * i + 2);
+        }
+
+        private void siftDown() {
+            int n = heap.length;
+            int i = 0;
+            TermCursor top = heap[0];
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) break;
+                if (child + 1 < n && heap[child + 1].doc < heap[child].doc) child++;
+                if (heap[child].doc >= top.doc) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = top;
+        }
+    }
+
+    /**
+     * Matches verses where every sub-cursor matches
+     */
+    static final class AndCursor extends Cursor {
+        private final Cursor[] subs;
+
+        AndCursor(Cursor[] subs) {
+            // Lead with the rarest clause
+            this.subs = subs.clone();
+            Arrays.sort(this.subs, Comparator.comparingLong(Cursor::cost));
+        }
+
+        @Override
+        int nextDoc() {
+            return doc == NO_MORE ? NO_MORE : advance(doc + 1);
+        }
+
+        @Override
+        int advance(int target) {
+            int candidate = subs[0].advance(target);
+            outer:
+            while (candidate != NO_MORE) {
+                for (int i = 1; i < subs.length; i++) {
+                    int d = subs[i].advance(candidate);
+                    if (d != candidate) {
+                        candidate = subs[0].advance(d);
+                        continue outer;
+                    }
+                }
+                break;
+            }
+            return doc = candidate;
+        }
+
+        @Override
+        long cost() {
+            return subs[0].cost();
+        }
+
+        @Override
+        float score() {
+            float total = 0f;
+            for (Cursor sub : subs) total += sub.score();
+            return total;
+        }
+    }
+
+    /**
+     * Matches verses containing the terms at consecutive positions
+     */
+    final class PhraseCursor extends Cursor {
+        private final TermCursor[] terms;
+        private final AndCursor all;
+
+        PhraseCursor(TermCursor[] terms) {
+            this.terms = terms;
+            this.all = new AndCursor(terms);
+        }
+
+        @Override
+        int nextDoc() {
+            return doc == NO_MORE ? NO_MORE : advance(doc + 1);
+        }
+
+        @Override
+        int advance(int target) {
+            int candidate = all.advance(target);
+            while (candidate != NO_MORE && !matchesPhrase()) {
+                candidate = all.advance(candidate + 1);
+            }
+            return doc = candidate;
+        }
+
+        @Override
+        long cost() {
+            return all.cost();
+        }
+
+        @Override
+        float score() {
+            return all.score();
+        }
+
+        private boolean matchesPhrase() {
+            TermCursor first = terms[0];
+            for (int p = first.posStart(); p < first.posEnd(); p++) {
+                int start = positions[p];
+                boolean match = true;
+                for (int i = 1; i < terms.length && match; i++) {
+                    match = containsPosition(terms[i], start + i);
+                }
+                if (match) return true;
+            }
+            return false;
+        }
+
+        private boolean containsPosition(TermCursor cursor, int position) {
+            for (int p = cursor.posStart(); p < cursor.posEnd(); p++) {
+                if (positions[p] == position) return true;
+                if (positions[p] > position) return false;
+            }
+            return false;
+        }
+    }
+}
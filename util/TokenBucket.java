@@ -0,0 +1,63 @@
+package com.mybible.util;
+
+/**
+ * TokenBucket - Client-side rate limiter
+ *
+ * Holds up to `capacity` tokens and refills continuously at `ratePerMinute`.
+ * Each request takes one token; when the bucket is empty the request is
+ * rejected immediately rather than queued, so callers never block on it.
+ *
+ * Usage:
+ *   TokenBucket limiter = new TokenBucket(60, 10);  // 60/min, bursts of 10
+ *   if (!limiter.tryAcquire()) {
+ *       // over quota - fail fast or serve from cache
+ *   }
+ */
+public class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param ratePerMinute sustained rate
+     * @param capacity largest burst allowed after an idle period
+     */
+    public TokenBucket(int ratePerMinute, int capacity) {
+        if (ratePerMinute <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Rate and capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerMinute / 60e9;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Take one token if available
+     *
+     * @return false if the rate limit has been reached
+     */
+    public synchronized boolean tryAcquire() {
+        refill();
+        if (tokens < 1) return false;
+        tokens -= 1;
+        return true;
+    }
+
+    public int getCapacity() {
+        return (int) capacity;
+    }
+
+    public synchronized int getAvailableTokens() {
+        refill();
+        return (int) tokens;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,232 @@
+package com.mybible.util;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * TokenRevocationList - Revoked JWT ids (jti), checked on every request
+ *
+ * A Bloom filter answers the common case ("not revoked") with a few bit reads
+ * and no allocation; only possible hits go to the exact set. Entries are kept
+ * until the token they revoke would have expired anyway, then dropped.
+ *
+ * Revocations are appended to a local file ("jti<TAB>exp-seconds" per line)
+ * and reloaded at startup, so a restart does not un-revoke tokens. The file
+ * is compacted when expired entries are purged.
+ *
+ * Usage:
+ *   TokenRevocationList.getInstance().open(Paths.get("/opt/jac/data/revoked-tokens.txt"));
+ *   TokenRevocationList.getInstance().revoke(payload.jti, payload.expiresAt);
+ *   if (TokenRevocationList.getInstance().isRevoked(payload.jti)) ...reject
+ */
+public class TokenRevocationList {
+
+    private static TokenRevocationList instance;
+
+    // Sized for 100k live revocations at ~1% false positives; grows if exceeded
+    private static final int MIN_CAPACITY = 100000;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final long PURGE_INTERVAL_MINUTES = 60;
+
+    // jti -> expiry (epoch seconds)
+    private final ConcurrentHashMap<String, Long> revoked = new ConcurrentHashMap<>();
+    private volatile BloomFilter bloom = new BloomFilter(MIN_CAPACITY, FALSE_POSITIVE_RATE);
+
+    private Path file;
+    private Writer appender;
+    private ScheduledExecutorService scheduler;
+
+    private TokenRevocationList() {}
+
+    public static synchronized TokenRevocationList getInstance() {
+        if (instance == null) {
+            instance = new TokenRevocationList();
+        }
+        return instance;
+    }
+
+    /**
+     * Load revocations from a file, compact it, and keep appending new ones to it
+     */
+    public synchronized void open(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+
+        long now = System.currentTimeMillis() / 1000;
+        if (Files.isRegularFile(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    int tab = line.indexOf('\t');
+                    if (tab <= 0) continue;
+                    try {
+                        long exp = Long.parseLong(line.substring(tab + 1).trim());
+                        if (exp >= now) revoked.put(line.substring(0, tab), exp);
+                    } catch (NumberFormatException e) {
+                        // Skip malformed line
+                    }
+                }
+            }
+        }
+        rewrite();
+        System.out.println("[TokenRevocationList] " + revoked.size() + " active revocations loaded from " + file);
+
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "token-revocation-purge");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(() -> {
+                try {
+                    purgeExpired();
+                } catch (IOException e) {
+                    System.err.println("[TokenRevocationList] Purge failed: " + e.getMessage());
+                }
+            }, PURGE_INTERVAL_MINUTES, PURGE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    // ========================================================================
+    // Hot Path
+    // ========================================================================
+
+    /**
+     * @param jti token id; tokens without one (issued before revocation
+     *            support) are never reported as revoked
+     */
+    public boolean isRevoked(String jti) {
+        if (jti == null) return false;
+        return bloom.mightContain(jti) && revoked.containsKey(jti);
+    }
+
+    // ========================================================================
+    // Revocation
+    // ========================================================================
+
+    /**
+     * Revoke a token until its expiry (epoch seconds)
+     */
+    public synchronized void revoke(String jti, long expiresAt) {
+        if (jti == null || expiresAt < System.currentTimeMillis() / 1000) return;
+        if (revoked.put(jti, expiresAt) != null) return;
+
+        if (revoked.size() > bloom.capacity) {
+            rebuildBloom();
+        } else {
+            bloom.add(jti);
+        }
+
+        if (appender != null) {
+            try {
+                appender.write(jti + "\t" + expiresAt + "\n");
+                appender.flush();
+            } catch (IOException e) {
+                System.err.println("[TokenRevocationList] WARNING: Could not persist revocation: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Drop revocations for tokens that have expired, then rebuild the filter and file
+     */
+    public synchronized void purgeExpired() throws IOException {
+        long now = System.currentTimeMillis() / 1000;
+        int before = revoked.size();
+        revoked.values().removeIf(exp -> exp < now);
+        if (revoked.size() == before) return;
+
+        rebuildBloom();
+        rewrite();
+        System.out.println("[TokenRevocationList] Purged " + (before - revoked.size()) + " expired revocations");
+    }
+
+    public int size() {
+        return revoked.size();
+    }
+
+    private void rebuildBloom() {
+        BloomFilter rebuilt = new BloomFilter(Math.max(MIN_CAPACITY, revoked.size() * 2), FALSE_POSITIVE_RATE);
+        for (String jti : revoked.keySet()) {
+            rebuilt.add(jti);
+        }
+        bloom = rebuilt;
+    }
+
+    private void rewrite() throws IOException {
+        if (file == null) return;
+        if (appender != null) appender.close();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, Long> entry : revoked.entrySet()) {
+                writer.write(entry.getKey() + "\t" + entry.getValue() + "\n");
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        appender = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+    }
+
+    // ========================================================================
+    // Bloom Filter
+    // ========================================================================
+
+    private static class BloomFilter {
+        final int capacity;
+        private final AtomicLongArray bits;
+        private final int bitCount;
+        private final int hashCount;
+
+        BloomFilter(int capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            double ln2 = Math.log(2);
+            long size = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.bitCount = (int) Math.min(Integer.MAX_VALUE - 63, Math.max(64, size));
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / capacity * ln2));
+            this.bits = new AtomicLongArray((bitCount + 63) / 64);
+        }
+
+        void add(String key) {
+            long hash = mix(key.hashCode());
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                int word = bit >>> 6;
+                long mask = 1L << bit;
+                long current;
+                while (((current = bits.get(word)) & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+                    // Retry - another bit in this word changed
+                }
+            }
+        }
+
+        boolean mightContain(String key) {
+            long hash = mix(key.hashCode());
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                int bit = ((h1 + i * h2) & Integer.MAX_VALUE) % bitCount;
+                if ((bits.get(bit >>> 6) & (1L << bit)) == 0) return false;
+            }
+            return true;
+        }
+
+        /** Spread a 32-bit hash over 64 bits (MurmurHash3 finalizer) */
+        private static long mix(long h) {
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            h *= 0xc4ceb9fe1a85ec53L;
+            h ^= h >>> 33;
+            return h;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.mybible.util;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * TranslationSnapshot - Versioned, checksummed binary image of a loaded translation
+ *
+ * Written after a translation is parsed from JSON, and memory-mapped on later
+ * startups instead of re-parsing. A snapshot is only used when its recorded
+ * SHA-256 of the source JSON matches the current file, so editing a translation
+ * automatically falls back to the JSON path (which rewrites the snapshot).
+ *
+ * File layout (big-endian):
+ *   header  magic "MYBS", format version, SHA-256 of source JSON (32 bytes),
+ *           body length (long), CRC32 of body (int)
+ *   body    metadata strings, book names, verse ids, text offsets, text arena,
+ *           then the search index columns
+ *
+ * Usage:
+ *   byte[] hash = TranslationSnapshot.sha256(jsonFile);
+ *   TranslationSnapshot.Contents contents = TranslationSnapshot.read(snapshotFile, code, hash, false);
+ *   if (contents == null) { ...parse JSON, then TranslationSnapshot.write(...) }
+ */
+public class TranslationSnapshot {
+
+    private static final int MAGIC = 0x4D594253; // "MYBS"
+    static final int VERSION = 1;
+    private static final int HASH_SIZE = 32;
+    static final int HEADER_SIZE = 4 + 4 + HASH_SIZE + 8 + 4;
+
+    private TranslationSnapshot() {}
+
+    /**
+     * Everything needed to rebuild a translation
+     */
+    public static class Contents {
+        public final BibleService.TranslationMetadata metadata;
+        public final VerseStore store;
+        public final SearchIndex index;
+
+        Contents(BibleService.TranslationMetadata metadata, VerseStore store, SearchIndex index) {
+            this.metadata = metadata;
+            this.store = store;
+            this.index = index;
+        }
+    }
+
+    // ========================================================================
+    // Hashing
+    // ========================================================================
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not available", e);
+        }
+    }
+
+    /**
+     * SHA-256 of a file's contents
+     */
+    public static byte[] sha256(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            while (channel.read(buffer) > 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+        return digest.digest();
+    }
+
+    // ========================================================================
+    // Writing
+    // ========================================================================
+
+    /**
+     * Write a snapshot atomically (temp file + rename). Each writer gets its
+     * own temp file, so a hot reload and a lazy load of the same translation
+     * cannot interleave their bytes.
+     */
+    public static void write(Path path, byte[] sourceHash, BibleService.TranslationMetadata metadata,
+                             VerseStore store, SearchIndex index) throws IOException {
+        Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName() + ".", ".tmp");
+        try {
+            writeTemp(temp, sourceHash, metadata, store, index);
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static void writeTemp(Path temp, byte[] sourceHash, BibleService.TranslationMetadata metadata,
+                                  VerseStore store, SearchIndex index) throws IOException {
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            // Body first (after a reserved header), checksummed as it is written
+            channel.position(HEADER_SIZE);
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new CheckedOutputStream(Channels.newOutputStream(channel), crc), 64 * 1024));
+            writeBody(out, metadata, store, index);
+            out.flush();
+            long bodyLength = channel.position() - HEADER_SIZE;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.put(sourceHash, 0, HASH_SIZE);
+            header.putLong(bodyLength);
+            header.putInt((int) crc.getValue());
+            header.flip();
+            channel.write(header, 0);
+            channel.force(false);
+        }
+    }
+
+    private static void writeBody(DataOutputStream out, BibleService.TranslationMetadata metadata,
+                                  VerseStore store, SearchIndex index) throws IOException {
+        writeString(out, metadata.name);
+        writeString(out, metadata.shortName);
+        writeString(out, metadata.year);
+
+        String[] bookNames = store.bookNames();
+        out.writeInt(bookNames.length);
+        for (String name : bookNames) {
+            writeString(out, name);
+        }
+        writeInts(out, store.ids());
+        writeInts(out, store.textOffsets());
+        ByteBuffer text = store.text();
+        out.writeInt(text.remaining());
+        if (text.hasArray()) {
+            out.write(text.array(), text.arrayOffset(), text.remaining());
+        } else {
+            byte[] chunk = new byte[64 * 1024];
+            while (text.hasRemaining()) {
+                int n = Math.min(chunk.length, text.remaining());
+                text.get(chunk, 0, n);
+                out.write(chunk, 0, n);
+            }
+        }
+
+        String[] terms = index.terms();
+        out.writeInt(terms.length);
+        for (String term : terms) {
+            writeString(out, term);
+        }
+        writeInts(out, index.termStarts());
+        writeInts(out, index.docs());
+        writeInts(out, index.posStarts());
+        writeChars(out, index.positions());
+        writeChars(out, index.docLengths());
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int v : values) {
+            out.writeInt(v);
+        }
+    }
+
+    private static void writeChars(DataOutputStream out, char[] values) throws IOException {
+        out.writeInt(values.length);
+        for (char v : values) {
+            out.writeChar(v);
+        }
+    }
+
+    // ========================================================================
+    // Reading
+    // ========================================================================
+
+    /**
+     * Memory-map and load a snapshot
+     *
+     * @param expectedHash SHA-256 of the current source JSON
+     * @param mapText true to leave verse text in the mapped file (off-heap)
+     *                instead of copying it onto the Java heap
+     * @return the contents, or null if the snapshot is missing, from another
+     *         format version, or was built from a different source file
+     * @throws IOException if the snapshot is truncated, fails its checksum or does not parse
+     */
+    public static Contents read(Path path, String code, byte[] expectedHash, boolean mapText) throws IOException {
+        if (!Files.isRegularFile(path)) return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) throw new IOException("Snapshot truncated: " + path);
+
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buf.getInt() != MAGIC) throw new IOException("Not a translation snapshot: " + path);
+            if (buf.getInt() != VERSION) return null;
+
+            byte[] hash = new byte[HASH_SIZE];
+            buf.get(hash);
+            if (!MessageDigest.isEqual(hash, expectedHash)) return null;
+
+            long bodyLength = buf.getLong();
+            int expectedCrc = buf.getInt();
+            if (bodyLength != size - HEADER_SIZE) throw new IOException("Snapshot truncated: " + path);
+
+            CRC32 crc = new CRC32();
+            crc.update(buf.duplicate());
+            if ((int) crc.getValue() != expectedCrc) throw new IOException("Snapshot checksum mismatch: " + path);
+
+            try {
+                return readBody(buf, code, mapText);
+            } catch (RuntimeException e) {
+                // Checksum matched but the body does not parse (e.g. written by a buggy build)
+                throw new IOException("Snapshot corrupt: " + path + " (" + e + ")", e);
+            }
+        }
+    }
+
+    private static Contents readBody(ByteBuffer buf, String code, boolean mapText) {
+        String name = readString(buf);
+        String shortName = readString(buf);
+        String year = readString(buf);
+        BibleService.TranslationMetadata metadata = new BibleService.TranslationMetadata(code, name, shortName, year);
+
+        String[] bookNames = new String[buf.getInt()];
+        for (int i = 0; i < bookNames.length; i++) {
+            bookNames[i] = readString(buf);
+        }
+        int[] ids = readInts(buf);
+        int[] textOffsets = readInts(buf);
+        int textLength = buf.getInt();
+        ByteBuffer text;
+        if (mapText) {
+            // The mapping stays valid after the channel is closed
+            text = buf.slice(buf.position(), textLength);
+            buf.position(buf.position() + textLength);
+        } else {
+            byte[] bytes = new byte[textLength];
+            buf.get(bytes);
+            text = ByteBuffer.wrap(bytes);
+        }
+        VerseStore store = new VerseStore(bookNames, ids, textOffsets, text);
+
+        String[] terms = new String[buf.getInt()];
+        for (int i = 0; i < terms.length; i++) {
+            terms[i] = readString(buf);
+        }
+        int[] termStarts = readInts(buf);
+        int[] docs = readInts(buf);
+        int[] posStarts = readInts(buf);
+        char[] positions = readChars(buf);
+        char[] docLengths = readChars(buf);
+        SearchIndex index = new SearchIndex(terms, termStarts, docs, posStarts, positions, docLengths);
+
+        return new Contents(metadata, store, index);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int length = buf.getInt();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int[] readInts(ByteBuffer buf) {
+        int[] values = new int[buf.getInt()];
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * values.length);
+        return values;
+    }
+
+    private static char[] readChars(ByteBuffer buf) {
+        char[] values = new char[buf.getInt()];
+        buf.asCharBuffer().get(values);
+        buf.position(buf.position() + 2 * values.length);
+        return values;
+    }
+}
@@ -0,0 +1,462 @@
+package com.mybible.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * VerseStore - Compact, immutable columnar storage for one translation's verses
+ *
+ * Layout (all arrays indexed by verse ordinal, sorted in canonical order):
+ *   ids[]          packed verse id: book << 20 | chapter << 10 | verse
+ *   textOffsets[]  start of each verse in the text arena (length = count + 1)
+ *   text           all verse text, UTF-8 encoded, stored contiguously
+ *
+ * Chapters are contiguous ordinal ranges described by chapterKeys[] (book << 10 | chapter)
+ * and chapterStarts[], so chapter and verse lookups are a binary search over ~1,200
+ * chapter keys followed by array indexing. Book numbers 1-66 follow
+ * BibleService.BOOK_ORDER; any other book names are numbered from 67 in file order.
+ *
+ * The text arena is a ByteBuffer: a heap array by default, or a memory-mapped /
+ * direct buffer when text is kept off-heap. Verse text is only decoded into a
+ * String when a Verse is built, and writeText() copies raw bytes without decoding.
+ *
+ * Usage:
+ *   VerseStore.Builder builder = new VerseStore.Builder();
+ *   builder.add("Genesis", 1, 1, "In the beginning...");
+ *   VerseStore store = builder.build();
+ */
+public class VerseStore {
+
+    static final int CHAPTER_BITS = 10;
+    static final int VERSE_BITS = 10;
+    static final int MAX_CHAPTER = (1 << CHAPTER_BITS) - 1;
+    static final int MAX_VERSE = (1 << VERSE_BITS) - 1;
+    static final int MAX_BOOK = (1 << (31 - CHAPTER_BITS - VERSE_BITS)) - 1;
+
+    private final String[] bookNames;          // indexed by book number (0 unused)
+    private final Map<String, Integer> bookNumbers;
+    private final int[] bookChapterCounts;     // indexed by book number
+    private final int[] ids;
+    private final int[] textOffsets;
+    private final ByteBuffer text;  // only absolute reads - safe to share across threads
+    private final int[] chapterKeys;
+    private final int[] chapterStarts;
+
+    private static final ThreadLocal<byte[]> SCRATCH = ThreadLocal.withInitial(() -> new byte[4096]);
+
+    VerseStore(String[] bookNames, int[] ids, int[] textOffsets, ByteBuffer text) {
+        this.bookNames = bookNames;
+        this.ids = ids;
+        this.textOffsets = textOffsets;
+        this.text = text;
+
+        this.bookNumbers = new HashMap<>();
+        for (int b = 1; b < bookNames.length; b++) {
+            if (bookNames[b] != null) bookNumbers.put(bookNames[b], b);
+        }
+
+        // Derive chapter ranges from the sorted ids
+        int chapters = 0;
+        int prev = -1;
+        for (int id : ids) {
+            int key = id >>> VERSE_BITS;
+            if (key != prev) {
+                chapters++;
+                prev = key;
+            }
+        }
+        this.chapterKeys = new int[chapters];
+        this.chapterStarts = new int[chapters + 1];
+        this.bookChapterCounts = new int[bookNames.length];
+        int c = 0;
+        prev = -1;
+        for (int i = 0; i < ids.length; i++) {
+            int key = ids[i] >>> VERSE_BITS;
+            if (key != prev) {
+                chapterKeys[c] = key;
+                chapterStarts[c] = i;
+                bookChapterCounts[key >>> CHAPTER_BITS]++;
+                c++;
+                prev = key;
+            }
+        }
+        chapterStarts[chapters] = ids.length;
+    }
+
+    // ========================================================================
+    // Id Encoding
+    // ========================================================================
+
+    static int encode(int book, int chapter, int verse) {
+        return (book << (CHAPTER_BITS + VERSE_BITS)) | (chapter << VERSE_BITS) | verse;
+    }
+
+    static int bookOf(int id) {
+        return id >>> (CHAPTER_BITS + VERSE_BITS);
+    }
+
+    static int chapterOf(int id) {
+        return (id >>> VERSE_BITS) & MAX_CHAPTER;
+    }
+
+    static int verseOf(int id) {
+        return id & MAX_VERSE;
+    }
+
+    // ========================================================================
+    // Lookups
+    // ========================================================================
+
+    public int getVerseCount() {
+        return ids.length;
+    }
+
+    /**
+     * @return the book number for a name, or 0 if the book is not present
+     */
+    public int bookNumber(String book) {
+        Integer number = bookNumbers.get(book);
+        return number != null ? number : 0;
+    }
+
+    public String bookName(int bookNumber) {
+        return bookNumber > 0 && bookNumber < bookNames.length ? bookNames[bookNumber] : null;
+    }
+
+    public int getChapterCount(int bookNumber) {
+        return bookNumber > 0 && bookNumber < bookChapterCounts.length ? bookChapterCounts[bookNumber] : 0;
+    }
+
+    /**
+     * @return the chapter index for book/chapter, or -1 if absent
+     */
+    public int chapterIndex(int bookNumber, int chapter) {
+        if (bookNumber <= 0 || chapter <= 0 || chapter > MAX_CHAPTER) return -1;
+        int idx = Arrays.binarySearch(chapterKeys, (bookNumber << CHAPTER_BITS) | chapter);
+        return idx >= 0 ? idx : -1;
+    }
+
+    /**
+     * @return the index of the first chapter at or after book/chapter in canonical
+     *         order (getTotalChapterCount() if there is none)
+     */
+    public int chapterIndexAtOrAfter(int bookNumber, int chapter) {
+        int idx = Arrays.binarySearch(chapterKeys, (bookNumber << CHAPTER_BITS) | chapter);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    /**
+     * First ordinal of a chapter (inclusive)
+     */
+    public int chapterStart(int chapterIndex) {
+        return chapterStarts[chapterIndex];
+    }
+
+    /**
+     * Last ordinal of a chapter (exclusive)
+     */
+    public int chapterEnd(int chapterIndex) {
+        return chapterStarts[chapterIndex + 1];
+    }
+
+    /**
+     * @return the ordinal of a verse, or -1 if absent
+     */
+    public int find(int bookNumber, int chapter, int verse) {
+        int c = chapterIndex(bookNumber, chapter);
+        if (c < 0 || verse <= 0 || verse > MAX_VERSE) return -1;
+        int start = chapterStarts[c];
+        int end = chapterStarts[c + 1];
+        int target = encode(bookNumber, chapter, verse);
+
+        // Chapters are almost always numbered densely from 1
+        int guess = start + verse - verseOf(ids[start]);
+        if (guess >= start && guess < end && ids[guess] == target) return guess;
+
+        int idx = Arrays.binarySearch(ids, start, end, target);
+        return idx >= 0 ? idx : -1;
+    }
+
+    /**
+     * @return the first ordinal whose packed id is >= id (getVerseCount() if none).
+     *         Ids sort in canonical order, so any book/chapter/verse span maps to
+     *         a contiguous ordinal range, even across chapters.
+     */
+    public int ordinalAtOrAfter(int id) {
+        int idx = Arrays.binarySearch(ids, id);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    public String bookAt(int ordinal) {
+        return bookNames[bookOf(ids[ordinal])];
+    }
+
+    public int chapterAt(int ordinal) {
+        return chapterOf(ids[ordinal]);
+    }
+
+    public int verseAt(int ordinal) {
+        return verseOf(ids[ordinal]);
+    }
+
+    public int idAt(int ordinal) {
+        return ids[ordinal];
+    }
+
+    public String textAt(int ordinal) {
+        int start = textOffsets[ordinal];
+        int length = textOffsets[ordinal + 1] - start;
+        if (text.hasArray()) {
+            return new String(text.array(), text.arrayOffset() + start, length, StandardCharsets.UTF_8);
+        }
+        byte[] bytes = new byte[length];
+        text.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write a verse's UTF-8 text without decoding it
+     */
+    public void writeText(int ordinal, OutputStream out) throws IOException {
+        int start = textOffsets[ordinal];
+        int length = textOffsets[ordinal + 1] - start;
+        if (text.hasArray()) {
+            out.write(text.array(), text.arrayOffset() + start, length);
+            return;
+        }
+        byte[] bytes = scratch(length);
+        text.get(start, bytes, 0, length);
+        out.write(bytes, 0, length);
+    }
+
+    /**
+     * Append a verse's text as JSON string content (without quotes). Escaping
+     * works on the UTF-8 bytes directly: the characters JSON requires escaping
+     * are all ASCII and never occur inside a multi-byte sequence.
+     */
+    public void writeJsonText(int ordinal, ByteArrayOutputStream out) {
+        int start = textOffsets[ordinal];
+        int length = textOffsets[ordinal + 1] - start;
+        byte[] bytes;
+        int from;
+        if (text.hasArray()) {
+            bytes = text.array();
+            from = text.arrayOffset() + start;
+        } else {
+            // One bulk copy out of the direct arena, then the same run-based escaping
+            bytes = scratch(length);
+            text.get(start, bytes, 0, length);
+            from = 0;
+        }
+
+        int end = from + length;
+        int run = from;
+        for (int i = from; i < end; i++) {
+            int b = bytes[i] & 0xFF;
+            if (b >= 0x20 && b != '"' && b != '\\') continue;
+            out.write(bytes, run, i - run);
+            run = i + 1;
+            switch (b) {
+                case '"':  out.write('\\'); out.write('"'); break;
+                case '\\': out.write('\\'); out.write('\\'); break;
+                case '\n': out.write('\\'); out.write('n'); break;
+                case '\r': out.write('\\'); out.write('r'); break;
+                case '\t': out.write('\\'); out.write('t'); break;
+                default:
+                    byte[] escape = String.format("\\u%04x", b).getBytes(StandardCharsets.US_ASCII);
+                    out.write(escape, 0, escape.length);
+            }
+        }
+        out.write(bytes, run, end - run);
+    }
+
+    /**
+     * Per-thread buffer for copying off-heap text; verses are short, so it rarely grows
+     */
+    private static byte[] scratch(int length) {
+        byte[] buffer = SCRATCH.get();
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+            SCRATCH.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Number of chapters in this store (chapter indexes are 0..count-1)
+     */
+    public int getTotalChapterCount() {
+        return chapterKeys.length;
+    }
+
+    public boolean isTextOffHeap() {
+        return !text.hasArray();
+    }
+
+    /**
+     * Copy of this store with the text arena moved to a direct (off-heap) buffer
+     */
+    public VerseStore withOffHeapText() {
+        if (isTextOffHeap()) return this;
+        ByteBuffer direct = ByteBuffer.allocateDirect(text.capacity());
+        direct.put(text.duplicate().clear());
+        direct.clear();
+        return new VerseStore(bookNames, ids, textOffsets, direct);
+    }
+
+    // Raw columns, for TranslationSnapshot
+    String[] bookNames() { return bookNames; }
+    int[] ids() { return ids; }
+    int[] textOffsets() { return textOffsets; }
+    ByteBuffer text() { return text.duplicate().clear(); }
+
+    /**
+     * Approximate heap footprint of this store in bytes
+     */
+    public long heapBytes() {
+        return 4L * (ids.length + textOffsets.length + chapterKeys.length + chapterStarts.length)
+            + (text.hasArray() ? text.capacity() : 0) + 64L * bookNames.length;
+    }
+
+    // ========================================================================
+    // Builder
+    // ========================================================================
+
+    /**
+     * Accumulates verses in any order; build() sorts them into canonical order.
+     * A repeated book/chapter/verse replaces the earlier text. Not thread-safe.
+     */
+    public static class Builder {
+        private final List<String> bookNames = new ArrayList<>();
+        private final Map<String, Integer> bookNumbers = new HashMap<>();
+        private int[] ids = new int[1024];
+        private int[] textStarts = new int[1024];
+        private byte[] text = new byte[64 * 1024];
+        private int count = 0;
+        private int textSize = 0;
+        private int skipped = 0;
+
+        public Builder() {
+            bookNames.add(null);
+            for (String book : BibleService.BOOK_ORDER) {
+                bookNumbers.put(book, bookNames.size());
+                bookNames.add(book);
+            }
+        }
+
+        /**
+         * Add a verse. Out-of-range references are counted and skipped.
+         */
+        public void add(String book, int chapter, int verse, CharSequence verseText) {
+            if (chapter <= 0 || chapter > MAX_CHAPTER || verse <= 0 || verse > MAX_VERSE) {
+                skipped++;
+                return;
+            }
+            Integer number = bookNumbers.get(book);
+            if (number == null) {
+                if (bookNames.size() > MAX_BOOK) {
+                    skipped++;
+                    return;
+                }
+                number = bookNames.size();
+                bookNumbers.put(book, number);
+                bookNames.add(book);
+            }
+
+            if (count == ids.length) {
+                ids = Arrays.copyOf(ids, count * 2);
+                textStarts = Arrays.copyOf(textStarts, count * 2);
+            }
+            ids[count] = encode(number, chapter, verse);
+            textStarts[count] = textSize;
+            count++;
+            appendUtf8(verseText);
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public VerseStore build() {
+            // Sort by id; the low 32 bits keep insertion order so the last duplicate wins
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = ((long) ids[i] << 32) | i;
+            }
+            Arrays.sort(keys);
+
+            int unique = 0;
+            for (int i = 0; i < count; i++) {
+                if (i + 1 < count && (keys[i + 1] >>> 32) == (keys[i] >>> 32)) continue;
+                keys[unique++] = keys[i];
+            }
+
+            // Re-lay the text arena in canonical order so chapters are contiguous
+            int[] sortedIds = new int[unique];
+            int[] offsets = new int[unique + 1];
+            int size = 0;
+            for (int i = 0; i < unique; i++) {
+                int src = (int) keys[i];
+                size += textEnd(src) - textStarts[src];
+            }
+            byte[] arena = new byte[size];
+            int pos = 0;
+            for (int i = 0; i < unique; i++) {
+                int src = (int) keys[i];
+                int len = textEnd(src) - textStarts[src];
+                sortedIds[i] = (int) (keys[i] >>> 32);
+                offsets[i] = pos;
+                System.arraycopy(text, textStarts[src], arena, pos, len);
+                pos += len;
+            }
+            offsets[unique] = pos;
+
+            String[] names = bookNames.toArray(new String[0]);
+            return new VerseStore(names, sortedIds, offsets, ByteBuffer.wrap(arena));
+        }
+
+        private int textEnd(int index) {
+            return index + 1 < count ? textStarts[index + 1] : textSize;
+        }
+
+        private void appendUtf8(CharSequence s) {
+            int len = s.length();
+            // Three bytes per char covers every case, including surrogate pairs
+            ensureText(len * 3);
+            byte[] out = text;
+            int p = textSize;
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c < 0x80) {
+                    out[p++] = (byte) c;
+                } else if (c < 0x800) {
+                    out[p++] = (byte) (0xC0 | (c >> 6));
+                    out[p++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    int cp = Character.toCodePoint(c, s.charAt(++i));
+                    out[p++] = (byte) (0xF0 | (cp >> 18));
+                    out[p++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                    out[p++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                    out[p++] = (byte) (0x80 | (cp & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    out[p++] = (byte) '?';
+                } else {
+                    out[p++] = (byte) (0xE0 | (c >> 12));
+                    out[p++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    out[p++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            textSize = p;
+        }
+
+        private void ensureText(int extra) {
+            if (textSize + extra > text.length) {
+                text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + extra));
+            }
+        }
+    }
+}